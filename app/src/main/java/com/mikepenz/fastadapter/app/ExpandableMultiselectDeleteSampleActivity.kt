@@ -213,7 +213,7 @@ class ExpandableMultiselectDeleteSampleActivity : AppCompatActivity() {
 
             // delete the selected items with the SubItemUtil to correctly handle sub items
             // this will even delete empty headers if you want to
-            SubItemUtil.deleteSelected(fastItemAdapter, mSelectExtension, mExpandableExtension, notifyParent = true, deleteEmptyHeaders = true)
+            SubItemUtil.deleteSelected(fastItemAdapter, mSelectExtension, notifyParent = true, deleteEmptyHeaders = true)
             //as we no longer have a selection so the actionMode can be finished
             mode.finish()
             //we consume the event
@@ -1,13 +1,17 @@
 package com.mikepenz.fastadapter.diff
 
+import android.os.Handler
+import android.os.Looper
 import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.ListUpdateCallback
 import com.mikepenz.fastadapter.FastAdapter
 import com.mikepenz.fastadapter.GenericItem
-import com.mikepenz.fastadapter.IAdapterExtension
+import com.mikepenz.fastadapter.IExpandable
 import com.mikepenz.fastadapter.adapters.ModelAdapter
 import com.mikepenz.fastadapter.utils.ComparableItemListImpl
 import java.util.*
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
 
 /**
  * Created by mikepenz on 28.10.16.
@@ -15,10 +19,22 @@ import java.util.*
 
 object FastAdapterDiffUtil {
 
+    // the generation of the latest submission per adapter, only accessed from the main thread
+    private val submitGenerations = WeakHashMap<ModelAdapter<*, *>, Int>()
+
+    private val mainHandler by lazy { Handler(Looper.getMainLooper()) }
+
+    /** The executor used by [submit] if no other executor is provided, its daemon threads do not keep the process alive */
+    val defaultDiffExecutor: Executor by lazy {
+        Executors.newFixedThreadPool(2) { runnable ->
+            Thread(runnable, "FastAdapterDiffUtil").apply { isDaemon = true }
+        }
+    }
+
     /**
      * This method will prepare the adapter and the previous set of of items for the diffing.
      *
-     * It automatically collapses all expandables (if enabled) as they are not supported by the diff util,
+     * It automatically collapses all expandables of the adapter, their sub items are removed by the diff,
      * pre sort the items based on the comparator if available.
      *
      * Note this is not needed in simple usecases. See [set] instead (set without [DiffUtil.DiffResult]).
@@ -31,12 +47,17 @@ object FastAdapterDiffUtil {
      * @return the list of original items as a copy, to calculate the diff on
      */
     fun <A : ModelAdapter<Model, Item>, Model, Item : GenericItem> prepare(adapter: A, items: List<Item>): List<Item> {
+        return prepare(adapter, items, true)
+    }
+
+    private fun <A : ModelAdapter<Model, Item>, Model, Item : GenericItem> prepare(adapter: A, items: List<Item>, collapse: Boolean): List<Item> {
         if (adapter.isUseIdDistributor) {
             adapter.idDistributor.checkIds(items)
         }
 
-        // The FastAdapterDiffUtil does not handle expanded items. Call collapse if possible
-        collapseIfPossible(adapter.fastAdapter)
+        if (collapse) {
+            collapseExpanded(adapter.adapterItems)
+        }
 
         //if we have a comparator then sort
         if (adapter.itemList is ComparableItemListImpl<*>) {
@@ -47,6 +68,19 @@ object FastAdapterDiffUtil {
         return adapter.adapterItems.toList()
     }
 
+    /**
+     * The FastAdapterDiffUtil does not handle expanded items. The sub items stay in the old items, so the diff removes them
+     */
+    private fun <Item : GenericItem> collapseExpanded(items: List<Item>) {
+        for (item in items) {
+            (item as? IExpandable<*>)?.let {
+                if (it.isExpanded) {
+                    it.isExpanded = false
+                }
+            }
+        }
+    }
+
     /**
      * This method will compute a [DiffUtil.DiffResult] based on the given adapter, and the list of new items.
      *
@@ -104,18 +138,73 @@ object FastAdapterDiffUtil {
         }
     }
 
-    /** Uses Reflection to collapse all items if this adapter uses expandable items */
-    private fun <Item : GenericItem> collapseIfPossible(fastAdapter: FastAdapter<Item>?) {
-        fastAdapter ?: return
-        try {
-            val c: Class<IAdapterExtension<Item>> = Class.forName("com.mikepenz.fastadapter.expandable.ExpandableExtension") as Class<IAdapterExtension<Item>>
-            val extension = fastAdapter.getExtension(c)
-            if (extension != null) {
-                val method = extension.javaClass.getMethod("collapse")
-                method.invoke(extension)
+    /**
+     * This method will compute a [DiffUtil.DiffResult] based on the given adapter, and the list of new items, keeping expanded items expanded.
+     *
+     * Instead of collapsing all expandables, the diff is calculated on the visible items: the current items of the adapter, including the sub items of expanded items,
+     * and the new items including the sub items of the new items which were expanded before (identified by their identifier).
+     * New items not contained in the adapter before keep their own expanded state.
+     *
+     * As the last step it will replace the items inside the adapter with the new set of visible items.
+     *
+     * @param adapter     the adapter containing the current items.
+     * @param items       the new set of items we want to put into the adapter, without the sub items
+     * @param callback    the callback used to implement the required checks to identify changes of items.
+     * @param detectMoves configuration for the [DiffUtil.calculateDiff] method
+     * @param A           The adapter type, whereas A extends [ModelAdapter]
+     * @param Model       The model type we work with
+     * @param Item        The item type kept in the adapter
+     * @return the [DiffUtil.DiffResult] computed.
+     */
+    @JvmOverloads
+    fun <A : ModelAdapter<Model, Item>, Model, Item : GenericItem> calculateExpandableDiff(adapter: A, items: List<Item>, callback: DiffCallback<Item> = DiffCallbackImpl(), detectMoves: Boolean = true): DiffUtil.DiffResult {
+        //remember the old items, including the visible sub items
+        val oldItems = prepare(adapter, items, false)
+        val visibleItems = flattenExpanded(oldItems, items)
+        if (adapter.isUseIdDistributor) {
+            adapter.idDistributor.checkIds(visibleItems)
+        }
+
+        val result = DiffUtil.calculateDiff(FastAdapterCallback(oldItems, visibleItems, callback), detectMoves)
+
+        postCalculate(adapter, visibleItems)
+
+        return result
+    }
+
+    /**
+     * Calculates a [DiffUtil.DiffResult] keeping expanded items expanded, and will directly dispatch it to the adapter.
+     * See [calculateExpandableDiff]
+     *
+     * @return the adapter to allow chaining
+     */
+    @JvmOverloads
+    fun <A : ModelAdapter<Model, Item>, Model, Item : GenericItem> setExpandable(adapter: A, items: List<Item>, callback: DiffCallback<Item> = DiffCallbackImpl(), detectMoves: Boolean = true): A {
+        val result = calculateExpandableDiff(adapter, items, callback, detectMoves)
+        return set(adapter, result)
+    }
+
+    /**
+     * @return the visible items for the new items, restoring the expanded state of the items from the old items
+     */
+    private fun <Item : GenericItem> flattenExpanded(oldItems: List<Item>, items: List<Item>): List<Item> {
+        val expandedStates = HashMap<Long, Boolean>()
+        for (item in oldItems) {
+            (item as? IExpandable<*>)?.let { expandedStates[item.identifier] = it.isExpanded }
+        }
+        val visibleItems = ArrayList<Item>(items.size)
+        addVisible(items, expandedStates, visibleItems)
+        return visibleItems
+    }
+
+    private fun <Item : GenericItem> addVisible(items: List<Item>, expandedStates: Map<Long, Boolean>, target: MutableList<Item>) {
+        for (item in items) {
+            target.add(item)
+            val expandable = item as? IExpandable<*> ?: continue
+            expandedStates[item.identifier]?.let { expandable.isExpanded = it }
+            if (expandable.isExpanded) {
+                (expandable.subItems as? List<Item>)?.let { addVisible(it, expandedStates, target) }
             }
-        } catch (ignored: Exception) {
-            //
         }
     }
 
@@ -202,12 +291,138 @@ object FastAdapterDiffUtil {
         return set(adapter, items, DiffCallbackImpl())
     }
 
+    /**
+     * This method will compute a [KeyedDiffResult] based on the given adapter, and the list of new items.
+     *
+     * Instead of the [DiffUtil] the items are matched via their identifier, which requires unique identifiers in the old and in the new list.
+     * Moves are detected via a longest increasing subsequence, which makes this O(n log n) also for lists with many moved items.
+     * If the identifiers are not unique, the result is calculated via the [DiffUtil].
+     *
+     * As the last step it will replace the items inside the adapter with the new set of items provided.
+     *
+     * @param adapter     the adapter containing the current items.
+     * @param items       the new set of items we want to put into the adapter
+     * @param callback    the callback used to implement the required checks to identify changes of items.
+     * @param A           The adapter type, whereas A extends [ModelAdapter]
+     * @param Model       The model type we work with
+     * @param Item        The item type kept in the adapter
+     * @return the [KeyedDiffResult] computed.
+     */
+    @JvmOverloads
+    fun <A : ModelAdapter<Model, Item>, Model, Item : GenericItem> calculateKeyedDiff(adapter: A, items: List<Item>, callback: DiffCallback<Item> = DiffCallbackImpl()): KeyedDiffResult {
+        //remember the old items
+        val oldItems = prepare(adapter, items)
+
+        val result = KeyedDiff.calculateDiff(oldItems, items, callback)
+
+        //make sure the new items list is not a reference of the already mItems list
+        postCalculate(adapter, items)
+
+        return result
+    }
+
+    /**
+     * Dispatches a [KeyedDiffResult] to the given Adapter.
+     *
+     * @param adapter the adapter to dispatch the updates to
+     * @param result  the computed [KeyedDiffResult]
+     * @return the adapter to allow chaining
+     */
+    operator fun <A : ModelAdapter<Model, Item>, Model, Item : GenericItem> set(adapter: A, result: KeyedDiffResult): A {
+        result.dispatchUpdatesTo(FastAdapterListUpdateCallback(adapter))
+        return adapter
+    }
+
+    /**
+     * Calculates a [KeyedDiffResult] given the adapter and the items, and will directly dispatch them to the adapter.
+     * See [calculateKeyedDiff]
+     *
+     * @return the adapter to allow chaining
+     */
+    @JvmOverloads
+    fun <A : ModelAdapter<Model, Item>, Model, Item : GenericItem> setKeyed(adapter: A, items: List<Item>, callback: DiffCallback<Item> = DiffCallbackImpl()): A {
+        val result = calculateKeyedDiff(adapter, items, callback)
+        return set(adapter, result)
+    }
+
+    /**
+     * Calculates the [DiffUtil.DiffResult] for the given items on a background thread, and applies it to the adapter on the main thread.
+     * Updating the items of the adapter and dispatching the changes happens as one step.
+     *
+     * Every submission supersedes the previous submissions for the same adapter, results of superseded submissions are discarded.
+     * If the items of the adapter were modified while the diff was calculated, the items are submitted again based on the modified items.
+     * Expanded items stay expanded until the result is applied, and are collapsed together with the removal of their sub items.
+     *
+     * Must be called from the main thread. The provided list is copied, it can be modified after this call.
+     *
+     * @param adapter     the adapter containing the current items.
+     * @param items       the new set of items we want to put into the adapter
+     * @param callback    the callback used to implement the required checks to identify changes of items.
+     * @param detectMoves configuration for the [DiffUtil.calculateDiff] method
+     * @param executor    the executor to calculate the diff on
+     * @param onApplied   called on the main thread after the items were applied to the adapter
+     * @param A           The adapter type, whereas A extends [ModelAdapter]
+     * @param Model       The model type we work with
+     * @param Item        The item type kept in the adapter
+     */
+    @JvmOverloads
+    fun <A : ModelAdapter<Model, Item>, Model, Item : GenericItem> submit(
+            adapter: A,
+            items: List<Item>,
+            callback: DiffCallback<Item> = DiffCallbackImpl(),
+            detectMoves: Boolean = true,
+            executor: Executor = defaultDiffExecutor,
+            onApplied: ((A) -> Unit)? = null
+    ) {
+        val newItems = items.toMutableList()
+        //the sub items stay visible until the result is applied, so the items are collapsed only then
+        val oldItems = prepare(adapter, newItems, false)
+        val generation = (submitGenerations[adapter] ?: 0) + 1
+        submitGenerations[adapter] = generation
+
+        executor.execute {
+            val result = DiffUtil.calculateDiff(FastAdapterCallback(oldItems, newItems, callback), detectMoves)
+            mainHandler.post {
+                if (submitGenerations[adapter] != generation) {
+                    // a newer submission for this adapter exists
+                    return@post
+                }
+                if (!isSameItems(adapter.adapterItems, oldItems)) {
+                    // the adapter was modified while calculating, the result does not apply anymore
+                    submit(adapter, newItems, callback, detectMoves, executor, onApplied)
+                    return@post
+                }
+                collapseExpanded(oldItems)
+                postCalculate(adapter, newItems)
+                set(adapter, result)
+                onApplied?.invoke(adapter)
+            }
+        }
+    }
+
+    /**
+     * Discards the results of all pending [submit] calls for the given adapter.
+     *
+     * Must be called from the main thread.
+     */
+    fun cancelPendingSubmissions(adapter: ModelAdapter<*, *>) {
+        submitGenerations[adapter]?.let { submitGenerations[adapter] = it + 1 }
+    }
+
+    private fun <Item> isSameItems(items: List<Item>, otherItems: List<Item>): Boolean {
+        if (items.size != otherItems.size) return false
+        for (i in items.indices) {
+            if (items[i] !== otherItems[i]) return false
+        }
+        return true
+    }
+
     /**
      * Convenient implementation for the [DiffUtil.Callback] to simplify difference calculation using [FastAdapter] items.
      *
      * @param Item the item type in the adapter
      */
-    private class FastAdapterCallback<Item : GenericItem> internal constructor(private val oldItems: List<Item>, private val newItems: List<Item>, private val callback: DiffCallback<Item>) : DiffUtil.Callback() {
+    internal class FastAdapterCallback<Item : GenericItem> internal constructor(private val oldItems: List<Item>, private val newItems: List<Item>, private val callback: DiffCallback<Item>) : DiffUtil.Callback() {
 
         override fun getOldListSize(): Int {
             return oldItems.size
@@ -248,7 +463,7 @@ object FastAdapterDiffUtil {
         }
 
         override fun onMoved(fromPosition: Int, toPosition: Int) {
-            adapter.fastAdapter?.notifyAdapterItemMoved(preItemCountByOrder + fromPosition, toPosition)
+            adapter.fastAdapter?.notifyAdapterItemMoved(preItemCountByOrder + fromPosition, preItemCountByOrder + toPosition)
         }
 
         override fun onChanged(position: Int, count: Int, payload: Any?) {
@@ -0,0 +1,268 @@
+package com.mikepenz.fastadapter.diff
+
+import androidx.recyclerview.widget.DiffUtil
+import com.mikepenz.fastadapter.GenericItem
+import com.mikepenz.fastadapter.diff.KeyedDiffResult.Companion.CHANGE
+import com.mikepenz.fastadapter.diff.KeyedDiffResult.Companion.INSERT
+import com.mikepenz.fastadapter.diff.KeyedDiffResult.Companion.MOVE
+import com.mikepenz.fastadapter.diff.KeyedDiffResult.Companion.OPERATION_SIZE
+import com.mikepenz.fastadapter.diff.KeyedDiffResult.Companion.REMOVE
+import com.mikepenz.fastadapter.utils.LongIntHashMap
+import com.mikepenz.fastadapter.utils.LongIntHashMap.Companion.NO_VALUE
+
+/**
+ * Diff engine for lists whose items have unique identifiers.
+ *
+ * Old and new items are matched via their identifier, the items which keep their relative order are found via a longest increasing subsequence.
+ * All other matched items are moved. This calculates the diff in O(n log n), independent of the amount of moved items.
+ */
+internal object KeyedDiff {
+
+    /**
+     * @return the operations to transform [oldItems] into [newItems], calculated via [DiffUtil] if the identifiers are not unique
+     */
+    fun <Item : GenericItem> calculateDiff(oldItems: List<Item>, newItems: List<Item>, callback: DiffCallback<Item>): KeyedDiffResult {
+        val oldSize = oldItems.size
+        val newSize = newItems.size
+
+        val oldPositions = LongIntHashMap(oldSize)
+        for (i in 0 until oldSize) {
+            if (oldPositions.put(oldItems[i].identifier, i) != NO_VALUE) {
+                return fallback(oldItems, newItems, callback)
+            }
+        }
+
+        // the new position of each old item, or -1 if it was removed. And the other way around
+        val oldToNew = IntArray(oldSize) { -1 }
+        val newToOld = IntArray(newSize)
+        val newPositions = LongIntHashMap(newSize)
+        for (j in 0 until newSize) {
+            val item = newItems[j]
+            if (newPositions.put(item.identifier, j) != NO_VALUE) {
+                return fallback(oldItems, newItems, callback)
+            }
+            val i = oldPositions[item.identifier]
+            if (i != NO_VALUE && callback.areItemsTheSame(oldItems[i], item)) {
+                oldToNew[i] = j
+                newToOld[j] = i
+            } else {
+                newToOld[j] = -1
+            }
+        }
+
+        val operations = OperationList()
+        val payloads = ArrayList<Any?>()
+
+        // removals, from the end so the positions of the remaining removals stay valid
+        var i = oldSize - 1
+        while (i >= 0) {
+            if (oldToNew[i] != -1) {
+                i--
+                continue
+            }
+            var start = i
+            while (start > 0 && oldToNew[start - 1] == -1) {
+                start--
+            }
+            operations.add(REMOVE, start, i - start + 1)
+            i = start - 1
+        }
+
+        // ranks of the matched items, in the old and in the new order
+        var matchedCount = 0
+        val oldRank = IntArray(oldSize)
+        for (o in 0 until oldSize) {
+            if (oldToNew[o] != -1) {
+                oldRank[o] = matchedCount++
+            }
+        }
+        // old rank of the matched items in the new order, and the new rank of the matched items in the old order
+        val sequence = IntArray(matchedCount)
+        val newRankOfOldRank = IntArray(matchedCount)
+        var t = 0
+        for (j in 0 until newSize) {
+            val o = newToOld[j]
+            if (o != -1) {
+                sequence[t] = oldRank[o]
+                newRankOfOldRank[oldRank[o]] = t
+                t++
+            }
+        }
+
+        dispatchMoves(sequence, newRankOfOldRank, operations)
+
+        // insertions, ascending so all items before the insertion already are at their final position
+        var j = 0
+        while (j < newSize) {
+            if (newToOld[j] != -1) {
+                j++
+                continue
+            }
+            var end = j
+            while (end + 1 < newSize && newToOld[end + 1] == -1) {
+                end++
+            }
+            operations.add(INSERT, j, end - j + 1)
+            j = end + 1
+        }
+
+        // changes, at their final position
+        var rangeStart = -1
+        var rangeCount = 0
+        for (n in 0 until newSize) {
+            val o = newToOld[n]
+            if (o == -1 || callback.areContentsTheSame(oldItems[o], newItems[n])) {
+                continue
+            }
+            val payload = callback.getChangePayload(oldItems[o], o, newItems[n], n)
+            if (payload == null && rangeStart != -1 && rangeStart + rangeCount == n) {
+                rangeCount++
+                continue
+            }
+            if (rangeStart != -1) {
+                operations.add(CHANGE, rangeStart, rangeCount)
+                payloads.add(null)
+                rangeStart = -1
+            }
+            if (payload == null) {
+                rangeStart = n
+                rangeCount = 1
+            } else {
+                operations.add(CHANGE, n, 1)
+                payloads.add(payload)
+            }
+        }
+        if (rangeStart != -1) {
+            operations.add(CHANGE, rangeStart, rangeCount)
+            payloads.add(null)
+        }
+
+        return KeyedDiffResult(operations.values, operations.size, payloads, null)
+    }
+
+    /**
+     * Adds the moves which reorder the matched items from the old into the new order.
+     * Only items which are not part of the longest increasing subsequence are moved.
+     *
+     * Every item gets a slot, in an order which is consistent with the old and the new order.
+     * Moved items get a slot for their old and for their new place. The current position of an item is the amount of occupied slots before its slot.
+     */
+    private fun dispatchMoves(sequence: IntArray, newRankOfOldRank: IntArray, operations: OperationList) {
+        val count = sequence.size
+        val stable = longestIncreasingSubsequence(sequence)
+
+        val oldSlot = IntArray(count)
+        val newSlot = IntArray(count)
+        var slot = 0
+        var o = 0
+        var t = 0
+        while (o < count || t < count) {
+            while (o < count && !stable[newRankOfOldRank[o]]) {
+                oldSlot[o++] = slot++
+            }
+            while (t < count && !stable[t]) {
+                newSlot[t++] = slot++
+            }
+            if (o < count) {
+                // both point to the same stable item now
+                oldSlot[o++] = slot
+                newSlot[t++] = slot
+                slot++
+            }
+        }
+
+        val occupied = FenwickTree(slot)
+        for (rank in 0 until count) {
+            occupied.add(oldSlot[rank], 1)
+        }
+        for (rank in 0 until count) {
+            if (stable[rank]) {
+                continue
+            }
+            val from = occupied.countBefore(oldSlot[sequence[rank]])
+            occupied.add(oldSlot[sequence[rank]], -1)
+            val to = occupied.countBefore(newSlot[rank])
+            occupied.add(newSlot[rank], 1)
+            if (from != to) {
+                operations.add(MOVE, from, to)
+            }
+        }
+    }
+
+    /**
+     * @return for each index of the sequence, if it is part of a longest strictly increasing subsequence
+     */
+    private fun longestIncreasingSubsequence(sequence: IntArray): BooleanArray {
+        val size = sequence.size
+        // the index of the smallest tail of all increasing subsequences with length i + 1
+        val tails = IntArray(size)
+        val previous = IntArray(size)
+        var length = 0
+        for (i in 0 until size) {
+            val value = sequence[i]
+            var low = 0
+            var high = length
+            while (low < high) {
+                val mid = (low + high) ushr 1
+                if (sequence[tails[mid]] < value) low = mid + 1 else high = mid
+            }
+            previous[i] = if (low > 0) tails[low - 1] else -1
+            tails[low] = i
+            if (low == length) {
+                length++
+            }
+        }
+        val result = BooleanArray(size)
+        var index = if (length > 0) tails[length - 1] else -1
+        while (index != -1) {
+            result[index] = true
+            index = previous[index]
+        }
+        return result
+    }
+
+    private fun <Item : GenericItem> fallback(oldItems: List<Item>, newItems: List<Item>, callback: DiffCallback<Item>): KeyedDiffResult {
+        val result = DiffUtil.calculateDiff(FastAdapterDiffUtil.FastAdapterCallback(oldItems, newItems, callback), true)
+        return KeyedDiffResult(IntArray(0), 0, emptyList(), result)
+    }
+
+    /** A growing list of operations, stored as flat int values */
+    private class OperationList {
+        var values = IntArray(16 * OPERATION_SIZE)
+        var size = 0
+
+        fun add(type: Int, first: Int, second: Int) {
+            val offset = size * OPERATION_SIZE
+            if (offset + OPERATION_SIZE > values.size) {
+                values = values.copyOf(values.size * 2)
+            }
+            values[offset] = type
+            values[offset + 1] = first
+            values[offset + 2] = second
+            size++
+        }
+    }
+
+    /** Counts the occupied slots before a slot in O(log n) */
+    private class FenwickTree(size: Int) {
+        private val tree = IntArray(size + 1)
+
+        fun add(slot: Int, delta: Int) {
+            var i = slot + 1
+            while (i < tree.size) {
+                tree[i] += delta
+                i += i and -i
+            }
+        }
+
+        fun countBefore(slot: Int): Int {
+            var sum = 0
+            var i = slot
+            while (i > 0) {
+                sum += tree[i]
+                i -= i and -i
+            }
+            return sum
+        }
+    }
+}
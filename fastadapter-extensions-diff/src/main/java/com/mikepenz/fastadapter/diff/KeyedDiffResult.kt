@@ -0,0 +1,56 @@
+package com.mikepenz.fastadapter.diff
+
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListUpdateCallback
+
+/**
+ * The result of a keyed diff calculation, see [FastAdapterDiffUtil.calculateKeyedDiff].
+ *
+ * Contains the ranged update operations which transform the old list into the new list.
+ */
+class KeyedDiffResult internal constructor(
+        private val operations: IntArray,
+        private val operationCount: Int,
+        private val payloads: List<Any?>,
+        private val fallback: DiffUtil.DiffResult?
+) {
+    /**
+     * `true` if the items did not have unique identifiers, and the result was calculated via [DiffUtil] instead
+     */
+    val isFallback: Boolean
+        get() = fallback != null
+
+    /**
+     * Dispatches the update operations to the given callback.
+     *
+     * @param updateCallback the callback to receive the update operations
+     */
+    fun dispatchUpdatesTo(updateCallback: ListUpdateCallback) {
+        fallback?.let {
+            it.dispatchUpdatesTo(updateCallback)
+            return
+        }
+        var payloadIndex = 0
+        for (i in 0 until operationCount) {
+            val offset = i * OPERATION_SIZE
+            val first = operations[offset + 1]
+            val second = operations[offset + 2]
+            when (operations[offset]) {
+                REMOVE -> updateCallback.onRemoved(first, second)
+                MOVE -> updateCallback.onMoved(first, second)
+                INSERT -> updateCallback.onInserted(first, second)
+                CHANGE -> updateCallback.onChanged(first, second, payloads[payloadIndex++])
+            }
+        }
+    }
+
+    internal companion object {
+        const val REMOVE = 0
+        const val MOVE = 1
+        const val INSERT = 2
+        const val CHANGE = 3
+
+        // type, position (or from position), count (or to position)
+        const val OPERATION_SIZE = 3
+    }
+}
@@ -0,0 +1,62 @@
+package com.mikepenz.fastadapter.diff;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mikepenz.fastadapter.IExpandable;
+import com.mikepenz.fastadapter.IParentItem;
+import com.mikepenz.fastadapter.ISubItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link TestItem} with sub items
+ */
+public class ExpandableTestItem extends TestItem implements IExpandable<TestItem.ViewHolder> {
+
+    private List<ISubItem<?>> mSubItems = new ArrayList<>();
+    private IParentItem<?> mParent;
+    private boolean mExpanded = false;
+
+    public ExpandableTestItem(String name) {
+        super(name);
+    }
+
+    @Override
+    public boolean isExpanded() {
+        return mExpanded;
+    }
+
+    @Override
+    public void setExpanded(boolean expanded) {
+        mExpanded = expanded;
+    }
+
+    @NonNull
+    @Override
+    public List<ISubItem<?>> getSubItems() {
+        return mSubItems;
+    }
+
+    @Override
+    public void setSubItems(@NonNull List<ISubItem<?>> list) {
+        this.mSubItems = list;
+    }
+
+    @Override
+    public boolean isAutoExpanding() {
+        return true;
+    }
+
+    @Override
+    public void setParent(@Nullable IParentItem<?> parent) {
+        this.mParent = parent;
+    }
+
+    @Nullable
+    @Override
+    public IParentItem<?> getParent() {
+        return mParent;
+    }
+}
@@ -1,6 +1,13 @@
 package com.mikepenz.fastadapter.diff;
 
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
 import com.mikepenz.fastadapter.FastAdapter;
+import com.mikepenz.fastadapter.ISubItem;
 import com.mikepenz.fastadapter.adapters.ItemAdapter;
 
 import org.junit.Assert;
@@ -10,9 +17,15 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Executor;
+
+import kotlin.Unit;
+
+import static org.robolectric.Shadows.shadowOf;
 
 
 /**
@@ -86,6 +99,298 @@ public class FastAdapterDiffUtilTest {
         Assert.assertEquals(updatedList.get(1).getIdentifier(), originalList.get(0).getIdentifier());
     }
 
+    @Test
+    public void testKeyedDiffShuffle() {
+        List<TestItem> originalList = TestDataGenerator.genTestItemList(100);
+        List<TestItem> updatedList = TestDataGenerator.genTestItemList(100);
+        Collections.shuffle(updatedList, new Random(1342348L));
+        testKeyed(originalList, updatedList, false);
+    }
+
+    @Test
+    public void testKeyedDiffInsertMove() {
+        List<TestItem> originalList = TestDataGenerator.genTestItemList(100);
+        List<TestItem> updatedList = TestDataGenerator.genTestItemList(150);
+        Collections.shuffle(updatedList, new Random(1342348L));
+        testKeyed(originalList, updatedList, false);
+    }
+
+    @Test
+    public void testKeyedDiffRemoveMove() {
+        List<TestItem> originalList = TestDataGenerator.genTestItemList(100);
+        List<TestItem> updatedList = TestDataGenerator.genTestItemList(50);
+        Collections.shuffle(updatedList, new Random(1342348L));
+        updatedList.add(TestDataGenerator.genTestItem(200));
+        testKeyed(originalList, updatedList, false);
+    }
+
+    @Test
+    public void testKeyedDiffChange() {
+        List<TestItem> originalList = TestDataGenerator.genTestItemList(20);
+        List<TestItem> updatedList = TestDataGenerator.genTestItemList(20);
+        Collections.reverse(updatedList);
+        TestItem changedItem = new TestItem("changed");
+        changedItem.setIdentifier(5);
+        updatedList.set(updatedList.size() - 6, changedItem);
+        testKeyed(originalList, updatedList, false);
+    }
+
+    @Test
+    public void testKeyedDiffDuplicateIdentifiers() {
+        List<TestItem> originalList = TestDataGenerator.genTestItemList(50);
+        List<TestItem> updatedList = TestDataGenerator.genTestItemList(50);
+        Collections.shuffle(updatedList, new Random(1342348L));
+        updatedList.add(10, TestDataGenerator.genTestItem(20));
+        testKeyed(originalList, updatedList, true);
+    }
+
+    /**
+     * Replays the dispatched updates onto the identifiers of the original list, and checks they result in the adjusted list
+     */
+    private void testKeyed(List<TestItem> original, List<TestItem> adjusted, boolean fallback) {
+        itemAdapter.set(original);
+        final List<Long> replayed = new ArrayList<>();
+        for (TestItem item : original) {
+            replayed.add(item.getIdentifier());
+        }
+        final List<Integer> changed = new ArrayList<>();
+
+        KeyedDiffResult result = FastAdapterDiffUtil.INSTANCE.calculateKeyedDiff(itemAdapter, adjusted);
+        Assert.assertEquals(fallback, result.isFallback());
+        result.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                for (int i = 0; i < count; i++) {
+                    replayed.add(position, null);
+                }
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                replayed.subList(position, position + count).clear();
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                replayed.add(toPosition, replayed.remove(fromPosition));
+            }
+
+            @Override
+            public void onChanged(int position, int count, @Nullable Object payload) {
+                for (int i = position; i < position + count; i++) {
+                    changed.add(i);
+                }
+            }
+        });
+
+        Assert.assertEquals(adjusted.size(), replayed.size());
+        for (int i = 0; i < adjusted.size(); i++) {
+            Long identifier = replayed.get(i);
+            if (identifier == null) {
+                //inserted items must not be matched to an original item
+                Assert.assertFalse(containsIdentifier(original, adjusted.get(i).getIdentifier()) && !fallback);
+            } else {
+                Assert.assertEquals(adjusted.get(i).getIdentifier(), (long) identifier);
+                TestItem originalItem = findItem(original, identifier);
+                Assert.assertEquals(!originalItem.equals(adjusted.get(i)), changed.contains(i));
+            }
+        }
+
+        FastAdapterDiffUtil.INSTANCE.set(itemAdapter, result);
+        assertItems(adjusted);
+    }
+
+    private static boolean containsIdentifier(List<TestItem> items, long identifier) {
+        return findItem(items, identifier) != null;
+    }
+
+    @Nullable
+    private static TestItem findItem(List<TestItem> items, long identifier) {
+        for (TestItem item : items) {
+            if (item.getIdentifier() == identifier) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testDiffCollapsesExpandedItems() {
+        ExpandableTestItem parent = genExpandableItem(1000, 2);
+        parent.setExpanded(true);
+        List<TestItem> originalList = TestDataGenerator.genTestItemList(3);
+        originalList.add(1, parent);
+        originalList.addAll(2, subItems(parent));
+        itemAdapter.set(originalList);
+
+        List<TestItem> updatedList = TestDataGenerator.genTestItemList(3);
+        updatedList.add(1, parent);
+        DiffUtil.DiffResult result = FastAdapterDiffUtil.INSTANCE.calculateDiff(itemAdapter, updatedList);
+
+        //the item is collapsed without modifying its sub items, the diff removes the visible sub items
+        Assert.assertFalse(parent.isExpanded());
+        Assert.assertEquals(2, parent.getSubItems().size());
+        Assert.assertEquals(Arrays.asList(0L, 1000L, 1L, 2L), replay(originalList, result));
+
+        FastAdapterDiffUtil.INSTANCE.set(itemAdapter, result);
+        assertItems(updatedList);
+    }
+
+    @Test
+    public void testExpandableDiffRestoresExpansionByIdentifier() {
+        ExpandableTestItem expanded = genExpandableItem(1000, 2);
+        expanded.setExpanded(true);
+        ExpandableTestItem collapsed = genExpandableItem(2000, 2);
+        List<TestItem> originalList = TestDataGenerator.genTestItemList(2);
+        originalList.add(1, expanded);
+        originalList.addAll(2, subItems(expanded));
+        originalList.add(collapsed);
+        itemAdapter.set(originalList);
+
+        //new instances for the same identifiers, with other expanded states and sub items, and a new expanded item
+        ExpandableTestItem expandedUpdate = genExpandableItem(1000, 3);
+        ExpandableTestItem collapsedUpdate = genExpandableItem(2000, 2);
+        collapsedUpdate.setExpanded(true);
+        ExpandableTestItem added = genExpandableItem(3000, 1);
+        added.setExpanded(true);
+        List<TestItem> updatedList = TestDataGenerator.genTestItemList(2);
+        updatedList.add(1, expandedUpdate);
+        updatedList.add(collapsedUpdate);
+        updatedList.add(added);
+
+        DiffUtil.DiffResult result = FastAdapterDiffUtil.INSTANCE.calculateExpandableDiff(itemAdapter, updatedList);
+
+        Assert.assertTrue(expandedUpdate.isExpanded());
+        Assert.assertFalse(collapsedUpdate.isExpanded());
+        Assert.assertTrue(added.isExpanded());
+        List<TestItem> visibleList = new ArrayList<>(updatedList);
+        visibleList.addAll(2, subItems(expandedUpdate));
+        visibleList.addAll(subItems(added));
+        //the sub items which were visible before are kept, only the new one is inserted
+        Assert.assertEquals(Arrays.asList(0L, 1000L, 1001L, 1002L, null, 1L, 2000L, null, null), replay(originalList, result));
+
+        FastAdapterDiffUtil.INSTANCE.set(itemAdapter, result);
+        assertItems(visibleList);
+    }
+
+    /**
+     * @return an expandable item with the given identifier, and sub items with the following identifiers
+     */
+    private static ExpandableTestItem genExpandableItem(int identifier, int subItemCount) {
+        ExpandableTestItem item = new ExpandableTestItem(identifier + "");
+        item.setIdentifier(identifier);
+        for (int i = 1; i <= subItemCount; i++) {
+            ExpandableTestItem subItem = new ExpandableTestItem((identifier + i) + "");
+            subItem.setIdentifier(identifier + i);
+            subItem.setParent(item);
+            item.getSubItems().add(subItem);
+        }
+        return item;
+    }
+
+    private static List<TestItem> subItems(ExpandableTestItem item) {
+        List<TestItem> subItems = new ArrayList<>();
+        for (ISubItem<?> subItem : item.getSubItems()) {
+            subItems.add((TestItem) subItem);
+        }
+        return subItems;
+    }
+
+    /**
+     * Replays the dispatched updates onto the identifiers of the original list, inserted items are null
+     */
+    private static List<Long> replay(List<TestItem> original, DiffUtil.DiffResult result) {
+        final List<Long> replayed = new ArrayList<>();
+        for (TestItem item : original) {
+            replayed.add(item.getIdentifier());
+        }
+        result.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                for (int i = 0; i < count; i++) {
+                    replayed.add(position, null);
+                }
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                replayed.subList(position, position + count).clear();
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                replayed.add(toPosition, replayed.remove(fromPosition));
+            }
+
+            @Override
+            public void onChanged(int position, int count, @Nullable Object payload) {
+            }
+        });
+        return replayed;
+    }
+
+    @Test
+    public void testSubmitSupersedesPreviousSubmission() {
+        itemAdapter.set(TestDataGenerator.genTestItemList(10));
+        List<Runnable> tasks = new ArrayList<>();
+        Executor executor = tasks::add;
+        List<Integer> applied = new ArrayList<>();
+
+        List<TestItem> first = TestDataGenerator.genTestItemList(20);
+        List<TestItem> second = TestDataGenerator.genTestItemList(5);
+        FastAdapterDiffUtil.INSTANCE.submit(itemAdapter, first, new DiffCallbackImpl<>(), true, executor, a -> {
+            applied.add(1);
+            return Unit.INSTANCE;
+        });
+        FastAdapterDiffUtil.INSTANCE.submit(itemAdapter, second, new DiffCallbackImpl<>(), true, executor, a -> {
+            applied.add(2);
+            return Unit.INSTANCE;
+        });
+        runTasks(tasks);
+
+        Assert.assertEquals(Collections.singletonList(2), applied);
+        assertItems(second);
+    }
+
+    @Test
+    public void testSubmitAfterConcurrentModification() {
+        itemAdapter.set(TestDataGenerator.genTestItemList(10));
+        List<Runnable> tasks = new ArrayList<>();
+        Executor executor = tasks::add;
+
+        List<TestItem> updatedList = TestDataGenerator.genTestItemList(20);
+        Collections.shuffle(updatedList, new Random(1342348L));
+        FastAdapterDiffUtil.INSTANCE.submit(itemAdapter, updatedList, new DiffCallbackImpl<>(), true, executor, null);
+        //modify the adapter while the diff is calculated
+        itemAdapter.remove(0);
+        runTasks(tasks);
+
+        //the result was discarded, and the items were submitted again
+        Assert.assertEquals(1, tasks.size());
+        Assert.assertEquals(9, itemAdapter.getAdapterItemCount());
+
+        runTasks(tasks);
+
+        assertItems(updatedList);
+    }
+
+    private void runTasks(List<Runnable> tasks) {
+        List<Runnable> pending = new ArrayList<>(tasks);
+        tasks.clear();
+        for (Runnable task : pending) {
+            task.run();
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private void assertItems(List<TestItem> items) {
+        Assert.assertEquals(items.size(), itemAdapter.getAdapterItemCount());
+        Assert.assertEquals(items.size(), adapter.getItemCount());
+        for (int i = 0; i < items.size(); i++) {
+            Assert.assertEquals(items.get(i), itemAdapter.getAdapterItem(i));
+        }
+    }
+
     public void test(List<TestItem> original, List<TestItem> adjusted) {
         itemAdapter.set(original);
 
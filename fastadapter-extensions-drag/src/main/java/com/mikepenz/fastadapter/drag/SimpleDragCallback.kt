@@ -4,8 +4,9 @@ import androidx.annotation.IntDef
 import androidx.recyclerview.widget.ItemTouchHelper
 import androidx.recyclerview.widget.RecyclerView
 import com.mikepenz.fastadapter.FastAdapter
+import com.mikepenz.fastadapter.GenericItem
 import com.mikepenz.fastadapter.IItem
-import com.mikepenz.fastadapter.adapters.ItemAdapter
+import com.mikepenz.fastadapter.IItemAdapter
 
 /**
  * Based on the [sample](https://github.com/AleBarreto/DragRecyclerView)
@@ -56,19 +57,21 @@ open class SimpleDragCallback : ItemTouchHelper.SimpleCallback {
             from = viewHolder.adapterPosition
         }
         if (callbackItemTouch == null) {
-            val adapter = recyclerView.adapter
-            var itemAdapter: ItemAdapter<*>? = null
-            if (adapter is FastAdapter<*>) {
-                //TODO this logic only works for the adapter at position 0 --> in the past it also only worked for the outer adapter
-                itemAdapter = adapter.adapter(0) as ItemAdapter<*>?
-            }
-            if (itemAdapter != null) {
-                itemAdapter.fastAdapter?.let {
-                    itemAdapter.move(it.getHolderAdapterPosition(viewHolder), it.getHolderAdapterPosition(target))
+            val fastAdapter = FastAdapter.getFromHolderTag<GenericItem>(viewHolder)
+                    ?: recyclerView.adapter as? FastAdapter<GenericItem>
+            val fromPosition = fastAdapter?.getHolderAdapterPosition(viewHolder) ?: RecyclerView.NO_POSITION
+            // the adapter holding the dragged item, which is not necessarily the first adapter
+            val itemAdapter = fastAdapter?.getAdapter(fromPosition) as? IItemAdapter<*, *>
+            if (fastAdapter != null && itemAdapter != null) {
+                val toPosition = fastAdapter.getHolderAdapterPosition(target)
+                // items can only be moved within their adapter
+                if (fastAdapter.getAdapter(toPosition) !== itemAdapter) {
+                    return false
                 }
+                itemAdapter.move(fromPosition, toPosition)
                 return true
             }
-            throw RuntimeException("SimpleDragCallback without an callback is only allowed when using the ItemAdapter or the FastItemAdapter")
+            throw RuntimeException("SimpleDragCallback without an callback is only allowed when using an IItemAdapter like the ItemAdapter or the FastItemAdapter")
         }
         return callbackItemTouch?.itemTouchOnMove(viewHolder.adapterPosition, target.adapterPosition)
                 ?: false // information to the interface
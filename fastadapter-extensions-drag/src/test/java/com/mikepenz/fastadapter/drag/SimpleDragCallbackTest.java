@@ -0,0 +1,204 @@
+package com.mikepenz.fastadapter.drag;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mikepenz.fastadapter.FastAdapter;
+import com.mikepenz.fastadapter.adapters.ItemAdapter;
+import com.mikepenz.fastadapter.items.AbstractItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class SimpleDragCallbackTest {
+    private ItemAdapter<NameItem> headerAdapter;
+    private ItemAdapter<NameItem> itemAdapter;
+    private FastAdapter<NameItem> fastAdapter;
+    private RecyclerView recyclerView;
+    private SimpleDragCallback callback;
+    // the positions the holders are bound to, as the RecyclerView would report them
+    private final Map<RecyclerView.ViewHolder, Integer> boundPositions = new IdentityHashMap<>();
+
+    @Before
+    public void setUp() throws Exception {
+        headerAdapter = new ItemAdapter<>();
+        itemAdapter = new ItemAdapter<>();
+        fastAdapter = new FastAdapter<NameItem>() {
+            @Override
+            public int getHolderAdapterPosition(@NonNull RecyclerView.ViewHolder holder) {
+                Integer position = boundPositions.get(holder);
+                return position != null ? position : RecyclerView.NO_POSITION;
+            }
+        };
+        fastAdapter.addAdapter(0, headerAdapter);
+        fastAdapter.addAdapter(1, itemAdapter);
+        headerAdapter.add(items("h1", "h2"));
+        itemAdapter.add(items("a", "b", "c"));
+
+        recyclerView = new RecyclerView(RuntimeEnvironment.application);
+        recyclerView.setAdapter(fastAdapter);
+        callback = new SimpleDragCallback();
+    }
+
+    @Test
+    public void onMove_ResolvesAdapterOfDraggedItem() throws Exception {
+        RecyclerView.ViewHolder a = createBoundHolder(2);
+        RecyclerView.ViewHolder b = createBoundHolder(3);
+
+        assertThat(callback.onMove(recyclerView, a, b)).isTrue();
+
+        assertThat(names(itemAdapter)).containsExactly("b", "a", "c");
+        assertThat(names(headerAdapter)).containsExactly("h1", "h2");
+    }
+
+    @Test
+    public void onMove_FollowsDraggedHolder() throws Exception {
+        RecyclerView.ViewHolder a = createBoundHolder(2);
+        RecyclerView.ViewHolder b = createBoundHolder(3);
+        RecyclerView.ViewHolder c = createBoundHolder(4);
+
+        assertThat(callback.onMove(recyclerView, a, b)).isTrue();
+        // the RecyclerView rebinds the swapped holders to their new positions
+        boundPositions.put(a, 3);
+        boundPositions.put(b, 2);
+        assertThat(callback.onMove(recyclerView, a, c)).isTrue();
+
+        assertThat(names(itemAdapter)).containsExactly("b", "c", "a");
+    }
+
+    @Test
+    public void onMove_RefusesMoveIntoOtherAdapter() throws Exception {
+        RecyclerView.ViewHolder header = createBoundHolder(1);
+        RecyclerView.ViewHolder a = createBoundHolder(2);
+
+        assertThat(callback.onMove(recyclerView, a, header)).isFalse();
+        assertThat(callback.onMove(recyclerView, header, a)).isFalse();
+
+        assertThat(names(headerAdapter)).containsExactly("h1", "h2");
+        assertThat(names(itemAdapter)).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    public void onMove_WithinFirstAdapter() throws Exception {
+        RecyclerView.ViewHolder first = createBoundHolder(0);
+        RecyclerView.ViewHolder second = createBoundHolder(1);
+
+        assertThat(callback.onMove(recyclerView, second, first)).isTrue();
+
+        assertThat(names(headerAdapter)).containsExactly("h2", "h1");
+        assertThat(names(itemAdapter)).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    public void onMove_DelegatesToItemTouchCallback() throws Exception {
+        final List<String> moves = new ArrayList<>();
+        SimpleDragCallback delegating = new SimpleDragCallback(new ItemTouchCallback() {
+            @Override
+            public void itemTouchStartDrag(@NonNull RecyclerView.ViewHolder viewHolder) {
+            }
+
+            @Override
+            public void itemTouchStopDrag(@NonNull RecyclerView.ViewHolder viewHolder) {
+            }
+
+            @Override
+            public boolean itemTouchOnMove(int oldPosition, int newPosition) {
+                moves.add(oldPosition + ">" + newPosition);
+                return true;
+            }
+
+            @Override
+            public void itemTouchDropped(int oldPosition, int newPosition) {
+            }
+        });
+        RecyclerView.ViewHolder a = createBoundHolder(2);
+        RecyclerView.ViewHolder b = createBoundHolder(3);
+
+        assertThat(delegating.onMove(recyclerView, a, b)).isTrue();
+
+        // the callback is responsible for the move
+        assertThat(moves).hasSize(1);
+        assertThat(names(itemAdapter)).containsExactly("a", "b", "c");
+    }
+
+    private RecyclerView.ViewHolder createBoundHolder(int position) {
+        ViewGroup parent = new FrameLayout(RuntimeEnvironment.application);
+        RecyclerView.ViewHolder holder = fastAdapter.onCreateViewHolder(parent, fastAdapter.getItemViewType(position));
+        fastAdapter.onBindViewHolder(holder, position, new ArrayList<>());
+        boundPositions.put(holder, position);
+        return holder;
+    }
+
+    private static List<String> names(ItemAdapter<NameItem> adapter) {
+        List<String> names = new ArrayList<>();
+        for (NameItem item : adapter.getAdapterItems()) {
+            names.add(item.name);
+        }
+        return names;
+    }
+
+    private static List<NameItem> items(String... names) {
+        List<NameItem> items = new ArrayList<>();
+        for (String name : names) {
+            items.add(new NameItem(name));
+        }
+        return items;
+    }
+
+    static class NameItem extends AbstractItem<NameItem.ViewHolder> implements IDraggable {
+        final String name;
+
+        NameItem(String name) {
+            this.name = name;
+            setIdentifier(name.hashCode());
+        }
+
+        @Override
+        public boolean isDraggable() {
+            return true;
+        }
+
+        @Override
+        public int getLayoutRes() {
+            return -1;
+        }
+
+        @Override
+        public int getType() {
+            return -1;
+        }
+
+        @Override
+        public View createView(Context ctx, @Nullable ViewGroup parent) {
+            return new FrameLayout(ctx);
+        }
+
+        @Override
+        public ViewHolder getViewHolder(View v) {
+            return new ViewHolder(v);
+        }
+
+        static class ViewHolder extends RecyclerView.ViewHolder {
+            ViewHolder(View view) {
+                super(view);
+            }
+        }
+    }
+}
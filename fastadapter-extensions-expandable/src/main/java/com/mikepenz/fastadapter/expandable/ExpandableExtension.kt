@@ -7,9 +7,12 @@ import android.view.View
 import androidx.collection.ArraySet
 import androidx.recyclerview.widget.RecyclerView
 import com.mikepenz.fastadapter.*
+import com.mikepenz.fastadapter.adapters.ModelAdapter
 import com.mikepenz.fastadapter.dsl.FastAdapterDsl
 import com.mikepenz.fastadapter.extensions.ExtensionsFactories
 import com.mikepenz.fastadapter.utils.AdapterPredicate
+import com.mikepenz.fastadapter.utils.DefaultItemListImpl
+import com.mikepenz.fastadapter.utils.ExpandableItemListImpl
 
 /**
  * Extension method to retrieve or create the ExpandableExtension from the current FastAdapter
@@ -102,6 +105,18 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
     /** Defines if the library will notify item changed on auto toggling  */
     var notifyOnAutoToggleExpandable = true
 
+    // the amount of visible expanded items, -1 if it has to be counted again
+    private var visibleExpandedCount = -1
+
+    /** If at least one visible item is expanded, counts the expanded items if this is not known */
+    private val hasExpandedItems: Boolean
+        get() {
+            if (visibleExpandedCount < 0) {
+                visibleExpandedCount = countExpanded(0, fastAdapter.itemCount)
+            }
+            return visibleExpandedCount > 0
+        }
+
     //-------------------------
     //-------------------------
     //Expandable stuff
@@ -135,12 +150,207 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
 
     override fun withSavedInstanceState(savedInstanceState: Bundle?, prefix: String) {
         val expandedItems = savedInstanceState?.getLongArray(BUNDLE_EXPANDED + prefix) ?: return
-        var id: Long?
+        val identifiers = expandedItems.toHashSet()
+
+        //collect the adapters with a plain item list and without an active filter, only those can be rebuilt in one pass
+        val modelAdapters = ArrayList<ModelAdapter<*, Item>>()
+        var order = 0
+        while (true) {
+            val adapter = fastAdapter.adapter(order++) ?: break
+            val modelAdapter = adapter as? ModelAdapter<*, Item>
+            if (modelAdapter == null || modelAdapter.itemList !is DefaultItemListImpl<Item> || modelAdapter.itemFilter.constraint != null) {
+                restoreExpandedItemsByPosition(identifiers)
+                return
+            }
+            modelAdapters.add(modelAdapter)
+        }
+
+        //expand all items in a single traversal per adapter, and notify once at the end
+        var changed = false
+        for (modelAdapter in modelAdapters) {
+            val itemList = modelAdapter.itemList
+            val items = ArrayList<Item>(itemList.size())
+            //the sub items get their identifiers like the adapter distributes them when expanding a single item
+            val idDistributor = if (modelAdapter.isUseIdDistributor) modelAdapter.idDistributor else null
+            if (expandInto(itemList.items, identifiers, items, idDistributor)) {
+                itemList[items, 0] = SILENT_NOTIFIER
+                changed = true
+            }
+        }
+        if (changed) {
+            fastAdapter.notifyAdapterDataSetChanged()
+        }
+    }
+
+    /**
+     * Adds the given items to the target list, including the sub items of all items which are expanded now
+     *
+     * @param idDistributor the id distributor to check the newly visible sub items with, or null
+     * @return true if at least one item was expanded
+     */
+    private fun expandInto(items: List<Item>, identifiers: Set<Long>, target: MutableList<Item>, idDistributor: IIdDistributor<Item>?): Boolean {
+        var changed = false
+        for (item in items) {
+            target.add(item)
+            val expandable = item as? IExpandable<*> ?: continue
+            if (!expandable.isExpanded && expandable.subItems.isNotEmpty() && identifiers.contains(item.identifier)) {
+                expandable.isExpanded = true
+                val subItems = expandable.subItems as List<Item>
+                idDistributor?.checkIds(subItems)
+                expandInto(subItems, identifiers, target, idDistributor)
+                changed = true
+            }
+        }
+        return changed
+    }
+
+    /**
+     * Expands all visible expandable items (by one level), or collapses all visible expanded items.
+     * Computes the new visible items of every adapter in one traversal, replaces them at once,
+     * and notifies either the changed ranges, or the data set change if there are too many ranges.
+     *
+     * @return false if an adapter does not expose its item list, in which case nothing was changed
+     */
+    private fun toggleAll(expand: Boolean, notifyItemChanged: Boolean): Boolean {
+        //collect the adapters exposing their item list, only those can be rebuilt in one pass
+        val modelAdapters = ArrayList<ModelAdapter<*, Item>>()
+        var order = 0
+        while (true) {
+            val adapter = fastAdapter.adapter(order++) ?: break
+            val modelAdapter = adapter as? ModelAdapter<*, Item> ?: return false
+            val itemList = modelAdapter.itemList
+            if (itemList !is DefaultItemListImpl<Item> && itemList !is ExpandableItemListImpl<Item>) {
+                return false
+            }
+            modelAdapters.add(modelAdapter)
+        }
+
+        //the changed ranges as pairs of start and count, in positions after the change for expand, and before the change for collapse
+        val ranges = ArrayList<Int>()
+        //the positions of the toggled items after the change
+        val toggledPositions = ArrayList<Int>()
+        var previousOffset = 0
+        var offset = 0
+        var consistent = true
+        for (modelAdapter in modelAdapters) {
+            val itemList = modelAdapter.itemList
+            val items = itemList.items
+            val target = ArrayList<Item>(items.size)
+            val rangesBefore = ranges.size
+            if (expand) {
+                //the sub items get their identifiers like the adapter distributes them when expanding a single item
+                val idDistributor = if (modelAdapter.isUseIdDistributor) modelAdapter.idDistributor else null
+                expandAllInto(items, offset, target, ranges, toggledPositions, idDistributor)
+            } else {
+                collapseAllInto(items, previousOffset, offset, target, ranges, toggledPositions)
+            }
+            previousOffset += items.size
+            offset += target.size
+            if (ranges.size == rangesBefore) {
+                continue
+            }
+            if (itemList is ExpandableItemListImpl<Item>) {
+                //the item list builds the visible items from the expanded states itself
+                itemList.rebuildIndex()
+                consistent = consistent && itemList.size() == target.size
+            } else {
+                itemList[target, 0] = SILENT_NOTIFIER
+            }
+        }
+        if (ranges.isNotEmpty()) {
+            if (!consistent || ranges.size / 2 > MAX_RANGE_NOTIFICATIONS) {
+                //the RecyclerView handles a single data set change cheaper than many ranges
+                fastAdapter.notifyAdapterDataSetChanged()
+                return true
+            }
+            fastAdapter.batch {
+                if (expand) {
+                    //ascending, every range start already includes the ranges before
+                    for (i in 0 until ranges.size step 2) {
+                        notifyAdapterItemRangeInserted(ranges[i], ranges[i + 1])
+                    }
+                } else {
+                    //descending, so the positions before the change stay valid
+                    for (i in ranges.size - 2 downTo 0 step 2) {
+                        notifyAdapterItemRangeRemoved(ranges[i], ranges[i + 1])
+                    }
+                }
+            }
+        }
+        //we need to notify to get the correct drawable if there is one showing the current state
+        //(also for expanded items without sub items, which got collapsed without hiding anything)
+        if (notifyItemChanged) {
+            val payload = if (expand) PAYLOAD_EXPAND else PAYLOAD_COLLAPSE
+            toggledPositions.forEach { fastAdapter.notifyItemChanged(it, payload) }
+        }
+        return true
+    }
+
+    /**
+     * Adds the items to the target, followed by the sub items of all items which are expanded now
+     *
+     * @param idDistributor the id distributor to check the newly visible sub items with, or null
+     */
+    private fun expandAllInto(items: List<Item>, offset: Int, target: MutableList<Item>, ranges: MutableList<Int>, toggledPositions: MutableList<Int>, idDistributor: IIdDistributor<Item>?) {
+        for (item in items) {
+            val position = offset + target.size
+            target.add(item)
+            val expandable = item as? IExpandable<*> ?: continue
+            if (!expandable.isExpanded && expandable.subItems.isNotEmpty()) {
+                expandable.isExpanded = true
+                toggledPositions.add(position)
+                ranges.add(position + 1)
+                ranges.add(expandable.subItems.size)
+                val subItems = expandable.subItems as List<Item>
+                idDistributor?.checkIds(subItems)
+                target.addAll(subItems)
+            }
+        }
+    }
+
+    /** Adds the items to the target, skipping the visible sub items of all items which are collapsed now */
+    private fun collapseAllInto(items: List<Item>, previousOffset: Int, offset: Int, target: MutableList<Item>, ranges: MutableList<Int>, toggledPositions: MutableList<Int>) {
+        var i = 0
+        val size = items.size
+        while (i < size) {
+            val item = items[i++]
+            val position = offset + target.size
+            target.add(item)
+            val expandable = item as? IExpandable<*> ?: continue
+            if (expandable.isExpanded) {
+                toggledPositions.add(position)
+                val hidden = collapseVisible(expandable)
+                if (hidden > 0) {
+                    ranges.add(previousOffset + i)
+                    ranges.add(hidden)
+                    i += hidden
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the item and its visible expanded sub items as collapsed
+     *
+     * @return the amount of visible sub items which get hidden
+     */
+    private fun collapseVisible(expandable: IExpandable<*>): Int {
+        expandable.isExpanded = false
+        var hidden = 0
+        for (subItem in expandable.subItems) {
+            hidden++
+            (subItem as? IExpandable<*>)?.takeIf { it.isExpanded }?.let { hidden += collapseVisible(it) }
+        }
+        return hidden
+    }
+
+    /** Fallback for adapters which do not expose their item list, expands the items one by one */
+    private fun restoreExpandedItemsByPosition(identifiers: Set<Long>) {
         var i = 0
         var size = fastAdapter.itemCount
         while (i < size) {
-            id = fastAdapter.getItem(i)?.identifier
-            if (id != null && expandedItems.contains(id)) {
+            val id = fastAdapter.getItem(i)?.identifier
+            if (id != null && identifiers.contains(id)) {
                 expand(i)
                 size = fastAdapter.itemCount
             }
@@ -201,11 +411,22 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
         return false
     }
 
-    override fun notifyAdapterDataSetChanged() {}
+    override fun notifyAdapterDataSetChanged() {
+        visibleExpandedCount = -1
+    }
 
-    override fun notifyAdapterItemRangeInserted(position: Int, itemCount: Int) {}
+    override fun notifyAdapterItemRangeInserted(position: Int, itemCount: Int) {
+        if (visibleExpandedCount >= 0) {
+            visibleExpandedCount += countExpanded(position, itemCount)
+        }
+    }
 
-    override fun notifyAdapterItemRangeRemoved(position: Int, itemCount: Int) {}
+    override fun notifyAdapterItemRangeRemoved(position: Int, itemCount: Int) {
+        //the removed items are gone already, so only no expanded items stays no expanded items
+        if (visibleExpandedCount > 0) {
+            visibleExpandedCount = -1
+        }
+    }
 
     override fun notifyAdapterItemMoved(fromPosition: Int, toPosition: Int) {
         //collapse items we move. just in case :D
@@ -214,11 +435,24 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
     }
 
     override fun notifyAdapterItemRangeChanged(position: Int, itemCount: Int, payload: Any?) {
-        for (i in position until position + itemCount) {
-            if (fastAdapter.getItem(position).isExpanded) {
-                collapse(position)
+        //a payload only updates the content of the items, and nothing can be collapsed if no item is expanded
+        if (payload != null || !hasExpandedItems) {
+            return
+        }
+        var collapsed = false
+        //descending, so collapsing an item does not move the items still to check
+        for (i in position + itemCount - 1 downTo position) {
+            val expandable = fastAdapter.getItem(i) as? IExpandable<*> ?: continue
+            //only collapse items which were replaced, an item still followed by its sub items is the same
+            if (expandable.isExpanded && fastAdapter.getItem(i + 1) !== expandable.subItems.firstOrNull()) {
+                collapse(i)
+                collapsed = true
             }
         }
+        //the sub items of a replaced item were not visible, so the tracked count is off
+        if (collapsed) {
+            visibleExpandedCount = -1
+        }
     }
 
     override fun set(items: List<Item>, resetFilter: Boolean) {
@@ -239,6 +473,9 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
      * @return the new count of subItems
      */
     fun notifyAdapterSubItemsChanged(position: Int, previousCount: Int): Int {
+        expandableItemList(position)?.let { itemList ->
+            return itemList.notifySubItemsChanged(position, fastAdapter.getPreItemCount(position))
+        }
         return fastAdapter.getItem(position).ifExpandable { expandable ->
             val adapter = fastAdapter.getAdapter(position)
             if (adapter != null && adapter is IItemAdapter<*, *>) {
@@ -317,6 +554,10 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
      */
     @JvmOverloads
     fun collapse(notifyItemChanged: Boolean = false) {
+        if (toggleAll(false, notifyItemChanged)) {
+            visibleExpandedCount = 0
+            return
+        }
         val expandedItems = expandedItems
         for (i in expandedItems.indices.reversed()) {
             collapse(expandedItems[i], notifyItemChanged)
@@ -331,11 +572,22 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
      */
     @JvmOverloads
     fun collapse(position: Int, notifyItemChanged: Boolean = false) {
-        val adapter = fastAdapter.getAdapter(position)
-        (adapter as? IItemAdapter<*, *>?)?.removeRange(
-            position + 1,
-            collapseAdapterPredicate.collapse(position, fastAdapter)
-        )
+        val knownCount = visibleExpandedCount
+        val collapsedCount = if (knownCount > 0) countExpanded(fastAdapter.getItem(position)) else 0
+        val itemList = expandableItemList(position)
+        if (itemList != null) {
+            //the item list knows the visible sub items of the hierarchy
+            itemList.collapse(position, fastAdapter.getPreItemCount(position))
+        } else {
+            val adapter = fastAdapter.getAdapter(position)
+            val subItemsCount = collapseAdapterPredicate.collapse(position, fastAdapter)
+            //all visible sub items are removed as one block
+            if (subItemsCount > 0) {
+                (adapter as? IItemAdapter<*, *>?)?.removeRange(position + 1, subItemsCount)
+            }
+        }
+        //the removal does not know which items were removed, but we do
+        visibleExpandedCount = if (knownCount >= collapsedCount) knownCount - collapsedCount else -1
         //we need to notify to get the correct drawable if there is one showing the current state
         if (notifyItemChanged) {
             fastAdapter.notifyItemChanged(position, PAYLOAD_COLLAPSE)
@@ -352,7 +604,7 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
     fun collapseIncludeParents(position: Int, notifyItemChanged: Boolean = false) {
         val parents = getExpandableParents(position)
 
-        parents.forEach { collapse(fastAdapter.getPosition(it.identifier)) }
+        parents.forEach { collapse(getPosition(it)) }
 
         //we need to notify to get the correct drawable if there is one showing the current state
         if (notifyItemChanged) {
@@ -367,6 +619,10 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
      */
     @JvmOverloads
     fun expand(notifyItemChanged: Boolean = false) {
+        if (toggleAll(true, notifyItemChanged)) {
+            visibleExpandedCount = -1
+            return
+        }
         val length = fastAdapter.itemCount
         for (i in length - 1 downTo 0) {
             expand(i, notifyItemChanged)
@@ -386,7 +642,11 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
         //if this item is not already expanded and has sub items we go on
         if (!expandable.isExpanded && expandable.subItems.isNotEmpty()) {
             val adapter = fastAdapter.getAdapter(position)
-            if (adapter != null && adapter is IItemAdapter<*, *>) {
+            val itemList = expandableItemList(position)
+            if (itemList != null) {
+                //the item list shows the sub items without copying them
+                itemList.expand(position, fastAdapter.getPreItemCount(position))
+            } else if (adapter != null && adapter is IItemAdapter<*, *>) {
                 (expandable.subItems as? List<Item>?)?.let { subItems ->
                     (adapter as IItemAdapter<*, Item>).addInternal(
                         position + 1,
@@ -397,6 +657,10 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
 
             //remember that this item is now opened (not collapsed)
             expandable.isExpanded = true
+            //the inserted sub items were counted already
+            if (visibleExpandedCount >= 0) {
+                visibleExpandedCount++
+            }
 
             //we need to notify to get the correct drawable if there is one showing the current state
             if (notifyItemChanged) {
@@ -415,11 +679,11 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
     fun expandAllOnPath(item: IExpandable<*>?, notifyItemChanged: Boolean = false) {
         val parents = getExpandableParents(item ?: return)
 
-        parents.forEach { expand(fastAdapter.getPosition(it.identifier)) }
+        parents.forEach { expand(getPosition(it)) }
 
         //we need to notify to get the correct drawable if there is one showing the current state
         if (notifyItemChanged) {
-            val position = fastAdapter.getPosition(item.identifier)
+            val position = getPosition(item)
             fastAdapter.notifyItemChanged(position, PAYLOAD_EXPAND)
         }
     }
@@ -434,7 +698,7 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
     fun expandIncludeParents(position: Int, notifyItemChanged: Boolean = false) {
         val parents = getExpandableParents(position)
 
-        parents.forEach { expand(fastAdapter.getPosition(it.identifier)) }
+        parents.forEach { expand(getPosition(it)) }
 
         //we need to notify to get the correct drawable if there is one showing the current state
         if (notifyItemChanged) {
@@ -458,6 +722,53 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
             .sum()
     }
 
+    /** @return the amount of expanded items within the given global range */
+    private fun countExpanded(position: Int, itemCount: Int): Int {
+        var count = 0
+        for (i in position until position + itemCount) {
+            if (fastAdapter.getItem(i).isExpanded) {
+                count++
+            }
+        }
+        return count
+    }
+
+    /** @return the amount of expanded items within the visible hierarchy of the given item, incl. the item itself */
+    private fun countExpanded(item: GenericItem?): Int {
+        val expandable = item as? IExpandable<*> ?: return 0
+        if (!expandable.isExpanded) {
+            return 0
+        }
+        var count = 1
+        for (subItem in expandable.subItems) {
+            count += countExpanded(subItem as? GenericItem)
+        }
+        return count
+    }
+
+    /** @return the [ExpandableItemListImpl] of the adapter at the given position, if the adapter is backed by one */
+    private fun expandableItemList(position: Int): ExpandableItemListImpl<Item>? {
+        @Suppress("UNCHECKED_CAST")
+        return (fastAdapter.getAdapter(position) as? ModelAdapter<*, Item>)?.itemList as? ExpandableItemListImpl<Item>
+    }
+
+    /**
+     * Resolves the global position of the item via its parents for adapters backed by an [ExpandableItemListImpl], otherwise by its identifier
+     */
+    private fun getPosition(item: IItem<*>): Int {
+        var order = 0
+        while (true) {
+            @Suppress("UNCHECKED_CAST")
+            val itemList = ((fastAdapter.adapter(order) ?: break) as? ModelAdapter<*, Item>)?.itemList as? ExpandableItemListImpl<Item>
+            val position = itemList?.getAdapterPosition(item) ?: -1
+            if (position >= 0) {
+                return position + fastAdapter.getPreItemCountByOrder(order)
+            }
+            order++
+        }
+        return fastAdapter.getPosition(item.identifier)
+    }
+
     /** Walks through the parents tree while parents are non-null and parents are IExpandable */
     private fun getExpandableParents(position: Int): List<IExpandable<*>> {
         val expandable = fastAdapter.getItem(position) as? IExpandable<*> ?: return emptyList()
@@ -484,6 +795,14 @@ class ExpandableExtension<Item : GenericItem>(private val fastAdapter: FastAdapt
     companion object {
         private const val BUNDLE_EXPANDED = "bundle_expanded"
 
+        // above this amount of changed ranges, expanding or collapsing all items notifies a data set change instead
+        private const val MAX_RANGE_NOTIFICATIONS = 16
+
+        // used to replace the items of an adapter, without notifying each adapter separately
+        private val SILENT_NOTIFIER = object : IAdapterNotifier {
+            override fun notify(fastAdapter: FastAdapter<*>, newItemsCount: Int, previousItemsCount: Int, itemsBeforeThisAdapter: Int): Boolean = false
+        }
+
         /**
          * Payload indicating the item was clicked to expand
          */
@@ -3,6 +3,7 @@ package com.mikepenz.fastadapter.utils
 import com.mikepenz.fastadapter.FastAdapter
 import com.mikepenz.fastadapter.GenericItem
 import com.mikepenz.fastadapter.IExpandable
+import com.mikepenz.fastadapter.select.SelectExtension
 import java.util.*
 
 /**
@@ -15,6 +16,7 @@ object AdapterUtil {
      * @param item          the parent item
      * @param selectedItems the list of selectedItems from the savedInstanceState
      */
+    @Deprecated("Sub items selected without the SelectExtension are not part of its selected items", ReplaceWith("restoreSubItemSelectionStatesForAlternativeStateManagement(item, selectedItems, selectExtension)"))
     @JvmStatic fun <Item> restoreSubItemSelectionStatesForAlternativeStateManagement(item: Item, selectedItems: List<String>?) where Item : GenericItem, Item : IExpandable<*> {
         if (!item.isExpanded) {
             val subItems = (item as IExpandable<*>).subItems
@@ -29,6 +31,27 @@ object AdapterUtil {
         }
     }
 
+    /**
+     * Internal method to restore the selection state of subItems, the sub items are selected via the given [SelectExtension]
+     *
+     * @param item            the parent item
+     * @param selectedItems   the list of selectedItems from the savedInstanceState
+     * @param selectExtension the extension which keeps track of the selected items
+     */
+    @JvmStatic fun <Item> restoreSubItemSelectionStatesForAlternativeStateManagement(item: Item, selectedItems: List<String>?, selectExtension: SelectExtension<Item>) where Item : GenericItem, Item : IExpandable<*> {
+        if (!item.isExpanded) {
+            val subItems = (item as IExpandable<*>).subItems
+            for (i in subItems.indices) {
+                val subItem = subItems[i] as Item
+                val id = subItem.identifier.toString()
+                if (selectedItems != null && selectedItems.contains(id)) {
+                    selectExtension.select(subItem, false)
+                }
+                restoreSubItemSelectionStatesForAlternativeStateManagement(subItem, selectedItems, selectExtension)
+            }
+        }
+    }
+
     /**
      * Internal method to find all selections from subItems and sub sub items so we can save those inside our savedInstanceState
      *
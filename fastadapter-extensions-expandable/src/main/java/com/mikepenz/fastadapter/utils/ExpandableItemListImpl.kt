@@ -0,0 +1,498 @@
+package com.mikepenz.fastadapter.utils
+
+import com.mikepenz.fastadapter.GenericItem
+import com.mikepenz.fastadapter.IAdapterNotifier
+import com.mikepenz.fastadapter.IExpandable
+import com.mikepenz.fastadapter.IParentItem
+import com.mikepenz.fastadapter.ISubItem
+import java.util.*
+
+/**
+ * An item list implementation which keeps the [IExpandable] / [ISubItem] hierarchy as the source of truth, instead of copying the sub items
+ * of expanded items into a flat list.
+ *
+ * The visible size of every expanded item is kept in an index per level, which allows to resolve the item at a position,
+ * and to expand or collapse an item in O(depth * log n). Adding or removing items is linear to the amount of their siblings
+ * (the same as for an array list). The [com.mikepenz.fastadapter.expandable.ExpandableExtension] uses
+ * [expand] and [collapse] automatically if an adapter is backed by this list.
+ *
+ * ```
+ * val itemAdapter = ItemAdapter(ExpandableItemListImpl<GenericItem>())
+ * ```
+ *
+ * Items added within an expanded item (via a position of one of its sub items) are added to its sub items, removing a visible sub item
+ * removes it from the sub items of its parent. Removing an expanded item always removes it together with its visible sub items.
+ * Items can only be moved within their own level (between their siblings).
+ * If the sub items of an expanded item are modified directly, call [notifySubItemsChanged].
+ */
+open class ExpandableItemListImpl<Item : GenericItem> @JvmOverloads constructor(
+        items: List<Item> = ArrayList()
+) : DefaultItemList<Item>() {
+
+    // the top level items
+    private val roots = ArrayList<Item>()
+    private val rootIndex = VisibleSizeIndex()
+    // the index of the sub items of every expanded (and visible) item
+    private val expandedNodes = IdentityHashMap<GenericItem, VisibleSizeIndex>()
+
+    override val items: MutableList<Item> = ItemsView()
+
+    override val isEmpty: Boolean
+        get() = roots.isEmpty()
+
+    init {
+        setRoots(items)
+    }
+
+    override fun size(): Int = rootIndex.totalSize
+
+    override fun get(position: Int): Item? {
+        if (position < 0 || position >= size()) {
+            return null
+        }
+        val level = locate(position).last()
+        @Suppress("UNCHECKED_CAST")
+        return level.siblings[level.entry] as Item
+    }
+
+    override fun getAdapterPosition(identifier: Long): Int {
+        val position = IntArray(1)
+        return if (indexOf(roots, identifier, position)) position[0] else -1
+    }
+
+    /**
+     * Calculates the position by walking up the parents of the item, without scanning the list.
+     * Only the siblings of the item and of its parents are searched, in O(depth * siblings).
+     *
+     * @param item the item to search
+     * @return the relative position of the item, or -1 if it is not visible
+     */
+    fun getAdapterPosition(item: GenericItem): Int {
+        val parent = (item as? ISubItem<*>)?.parent
+        val node = if (parent != null) expandedNodes[parent] else null
+        if (parent == null || node == null) {
+            val entry = roots.indexOfFirst { it === item }
+            return if (entry >= 0) rootIndex.offsetOf(entry) else -1
+        }
+        val entry = parent.subItems.indexOfFirst { it === item }
+        val parentPosition = getAdapterPosition(parent)
+        return if (entry >= 0 && parentPosition >= 0) parentPosition + 1 + node.offsetOf(entry) else -1
+    }
+
+    /**
+     * Expands the item at the given position, the sub items which are marked as expanded are shown expanded as well
+     *
+     * @param position the global position
+     * @return the amount of items which got visible
+     */
+    fun expand(position: Int, preItemCount: Int): Int {
+        val path = locate(position - preItemCount)
+        val level = path.last()
+        val expandable = level.siblings[level.entry] as? IExpandable<*> ?: return 0
+        if (expandedNodes.containsKey(expandable) || expandable.subItems.isEmpty()) {
+            return 0
+        }
+        expandable.isExpanded = true
+        val node = buildNode(expandable)
+        expandedNodes[expandable] = node
+        path.forEach { it.index.add(it.entry, node.totalSize) }
+        fastAdapter?.notifyAdapterItemRangeInserted(position + 1, node.totalSize)
+        return node.totalSize
+    }
+
+    /**
+     * Collapses the item at the given position, and all of its visible expanded sub items
+     *
+     * @param position the global position
+     * @return the amount of items which got hidden
+     */
+    fun collapse(position: Int, preItemCount: Int): Int {
+        val path = locate(position - preItemCount)
+        val level = path.last()
+        val expandable = level.siblings[level.entry] as? IExpandable<*> ?: return 0
+        expandable.isExpanded = false
+        val node = expandedNodes[expandable] ?: return 0
+        collapseNodes(expandable)
+        path.forEach { it.index.add(it.entry, -node.totalSize) }
+        fastAdapter?.notifyAdapterItemRangeRemoved(position + 1, node.totalSize)
+        return node.totalSize
+    }
+
+    /**
+     * Updates the index of the expanded item at the given position, after its sub items were modified directly
+     *
+     * @param position the global position
+     * @return the new count of sub items
+     */
+    fun notifySubItemsChanged(position: Int, preItemCount: Int): Int {
+        val path = locate(position - preItemCount)
+        val level = path.last()
+        val expandable = level.siblings[level.entry] as? IExpandable<*> ?: return 0
+        val node = expandedNodes[expandable] ?: return expandable.subItems.size
+        dropNodes(expandable)
+        val newNode = buildNode(expandable)
+        if (newNode.count > 0) {
+            expandedNodes[expandable] = newNode
+        } else {
+            expandable.isExpanded = false
+        }
+        path.forEach { it.index.add(it.entry, newNode.totalSize - node.totalSize) }
+        fastAdapter?.let { fastAdapter ->
+            fastAdapter.notifyAdapterItemRangeRemoved(position + 1, node.totalSize)
+            if (newNode.totalSize > 0) {
+                fastAdapter.notifyAdapterItemRangeInserted(position + 1, newNode.totalSize)
+            }
+        }
+        return expandable.subItems.size
+    }
+
+    /**
+     * Rebuilds the index after the expanded state of items was changed directly, without notifying the adapter
+     */
+    fun rebuildIndex() {
+        setRoots(ArrayList(roots))
+    }
+
+    override fun remove(position: Int, preItemCount: Int) {
+        removeRange(position, 1, preItemCount)
+    }
+
+    override fun removeRange(position: Int, itemCount: Int, preItemCount: Int) {
+        val removed = removeAt(position - preItemCount, itemCount)
+        if (removed > 0) {
+            fastAdapter?.notifyAdapterItemRangeRemoved(position, removed)
+        }
+    }
+
+    /**
+     * Moves the item (together with its visible sub items) between its siblings.
+     * The position after the last sibling of a level is the end of this level, instead of the start of the next one.
+     *
+     * @throws IllegalArgumentException if the target position is not within the level of the item
+     */
+    override fun move(fromPosition: Int, toPosition: Int, preItemCount: Int) {
+        val from = fromPosition - preItemCount
+        val to = toPosition - preItemCount
+        val item = get(from) ?: return
+        val level = locate(from).last()
+        val size = level.index.sizeOf(level.entry)
+        // the positions of the level, without the moved item
+        val levelStart = from - level.index.offsetOf(level.entry)
+        val levelEnd = levelStart + level.index.totalSize - size
+        // validate the target before modifying anything, the position of the target item before the removal
+        val target = if (to < from) to else to + size
+        require(to in levelStart..levelEnd && (to == levelEnd || locate(target).last().owner === level.owner)) {
+            "Items can only be moved within their level, from $fromPosition to $toPosition"
+        }
+        // keep the expanded state of the moved item
+        val expanded = expandedNodes.containsKey(item)
+        removeAt(from, 1)
+        (item as? IExpandable<*>)?.isExpanded = expanded
+        if (to == levelEnd && level.owner != null) {
+            // append to the sub items of the parent, the position itself already belongs to the next level
+            insertAt(locate(levelStart - 1) + Level(level.owner, level.siblings, level.index, level.index.count), listOf(item))
+        } else {
+            insertAt(to, listOf(item))
+        }
+        fastAdapter?.let { fastAdapter ->
+            if (size == 1) {
+                fastAdapter.notifyAdapterItemMoved(fromPosition, toPosition)
+            } else {
+                fastAdapter.notifyAdapterItemRangeRemoved(fromPosition, size)
+                fastAdapter.notifyAdapterItemRangeInserted(toPosition, size)
+            }
+        }
+    }
+
+    override fun clear(preItemCount: Int) {
+        val size = size()
+        setRoots(emptyList())
+        fastAdapter?.notifyAdapterItemRangeRemoved(preItemCount, size)
+    }
+
+    override fun addAll(items: List<Item>, preItemCount: Int) {
+        val previousSize = size()
+        val added = insertAt(previousSize, items)
+        if (added > 0) {
+            fastAdapter?.notifyAdapterItemRangeInserted(preItemCount + previousSize, added)
+        }
+    }
+
+    override fun addAll(position: Int, items: List<Item>, preItemCount: Int) {
+        val added = insertAt(position - preItemCount, items)
+        if (added > 0) {
+            fastAdapter?.notifyAdapterItemRangeInserted(position, added)
+        }
+    }
+
+    override fun set(position: Int, item: Item, preItemCount: Int) {
+        val relativePosition = position - preItemCount
+        val previousSize = locate(relativePosition).last().let { it.index.sizeOf(it.entry) }
+        val size = replaceAt(relativePosition, item)
+        fastAdapter?.let { fastAdapter ->
+            fastAdapter.notifyAdapterItemChanged(position)
+            if (previousSize > 1) {
+                fastAdapter.notifyAdapterItemRangeRemoved(position + 1, previousSize - 1)
+            }
+            if (size > 1) {
+                fastAdapter.notifyAdapterItemRangeInserted(position + 1, size - 1)
+            }
+        }
+    }
+
+    override fun set(items: List<Item>, preItemCount: Int, adapterNotifier: IAdapterNotifier?) {
+        val previousItemsCount = size()
+        setRoots(items)
+        fastAdapter?.let { fastAdapter ->
+            //now properly notify the adapter about the changes
+            (adapterNotifier ?: IAdapterNotifier.DEFAULT).notify(
+                    fastAdapter,
+                    size(),
+                    previousItemsCount,
+                    preItemCount
+            )
+        }
+    }
+
+    override fun setNewList(items: List<Item>, notify: Boolean) {
+        setRoots(items)
+        if (notify) {
+            fastAdapter?.notifyAdapterDataSetChanged()
+        }
+    }
+
+    /**
+     * Takes over the top level items of the given list, a (flat) list including the visible sub items is accepted as well.
+     * Items marked as expanded are shown expanded.
+     */
+    private fun setRoots(list: List<Item>) {
+        //make sure the new items list is not a reference of our own items
+        val items = if (list === this.items) ArrayList(list) else list
+        val topLevelItems = topLevel(items)
+        roots.clear()
+        roots.addAll(topLevelItems)
+        expandedNodes.clear()
+        rootIndex.reset(roots.size) { visibleSubSize(roots[it]) }
+    }
+
+    /** @return the items without the sub items whose parent is part of the items as well */
+    private fun topLevel(items: Collection<Item>): List<Item> {
+        val contained = Collections.newSetFromMap(IdentityHashMap<GenericItem, Boolean>(items.size))
+        contained.addAll(items)
+        return items.filter { item -> (item as? ISubItem<*>)?.parent.let { it == null || !contained.contains(it) } }
+    }
+
+    /**
+     * Inserts the items before the item at the given position, as its siblings
+     *
+     * @param position the relative position
+     * @return the amount of visible items added
+     */
+    private fun insertAt(position: Int, items: List<Item>): Int {
+        if (items.isEmpty()) {
+            return 0
+        }
+        return insertAt(if (position < size()) locate(position) else listOf(Level(null, rootSiblings, rootIndex, roots.size)), items)
+    }
+
+    /**
+     * Inserts the items before the entry of the last level of the path
+     *
+     * @return the amount of visible items added
+     */
+    private fun insertAt(path: List<Level>, items: List<Item>): Int {
+        val level = path.last()
+        level.owner?.let { owner ->
+            items.forEach { item ->
+                requireNotNull(item as? ISubItem<*>) { "Only sub items can be added within an expanded item" }.parent = owner
+            }
+        }
+        level.siblings.addAll(level.entry, items)
+        val subSizes = IntArray(items.size) { visibleSubSize(items[it]) }
+        level.index.insert(level.entry, subSizes)
+        val added = items.size + subSizes.sum()
+        for (i in 0 until path.size - 1) {
+            path[i].index.add(path[i].entry, added)
+        }
+        return added
+    }
+
+    /**
+     * Removes the items starting at the given position, an item is always removed together with its visible sub items
+     *
+     * @param position the relative position
+     * @return the amount of visible items removed
+     */
+    private fun removeAt(position: Int, itemCount: Int): Int {
+        var removed = 0
+        while (removed < itemCount && position < size()) {
+            val path = locate(position)
+            val level = path.last()
+            // remove all following siblings of the same level at once
+            var count = 0
+            var size = 0
+            while (removed + size < itemCount && level.entry + count < level.index.count) {
+                size += level.index.sizeOf(level.entry + count)
+                count++
+            }
+            val removedItems = level.siblings.subList(level.entry, level.entry + count)
+            removedItems.forEach { dropNodes(it) }
+            removedItems.clear()
+            level.index.remove(level.entry, count)
+            for (i in 0 until path.size - 1) {
+                path[i].index.add(path[i].entry, -size)
+            }
+            removed += size
+        }
+        return removed
+    }
+
+    /**
+     * Replaces the item at the given position
+     *
+     * @param position the relative position
+     * @return the visible size of the new item
+     */
+    private fun replaceAt(position: Int, item: Item): Int {
+        val path = locate(position)
+        val level = path.last()
+        level.owner?.let { owner ->
+            requireNotNull(item as? ISubItem<*>) { "Only sub items can be added within an expanded item" }.parent = owner
+        }
+        dropNodes(level.siblings[level.entry])
+        level.siblings[level.entry] = item
+        val delta = visibleSubSize(item) + 1 - level.index.sizeOf(level.entry)
+        path.forEach { it.index.add(it.entry, delta) }
+        return level.index.sizeOf(level.entry)
+    }
+
+    /** @return the levels from the top level down to the item at the given relative position, requires `0 <= position < size()` */
+    private fun locate(position: Int): List<Level> {
+        val path = ArrayList<Level>(4)
+        var owner: IParentItem<*>? = null
+        var siblings = rootSiblings
+        var index = rootIndex
+        var offset = position
+        while (true) {
+            val entry = index.indexOf(offset)
+            path.add(Level(owner, siblings, index, entry))
+            offset -= index.offsetOf(entry)
+            if (offset == 0) {
+                return path
+            }
+            // the position is within the visible sub items of this entry
+            val parent = siblings[entry] as IParentItem<*>
+            owner = parent
+            index = expandedNodes.getValue(parent)
+            @Suppress("UNCHECKED_CAST")
+            siblings = parent.subItems as MutableList<GenericItem>
+            offset -= 1
+        }
+    }
+
+    /** @return the amount of visible sub items of the item, and indexes them if the item is expanded */
+    private fun visibleSubSize(item: GenericItem): Int {
+        val expandable = item as? IExpandable<*> ?: return 0
+        if (!expandable.isExpanded || expandable.subItems.isEmpty()) {
+            return 0
+        }
+        val node = buildNode(expandable)
+        expandedNodes[expandable] = node
+        return node.totalSize
+    }
+
+    private fun buildNode(parent: IParentItem<*>): VisibleSizeIndex {
+        val subItems = parent.subItems
+        return VisibleSizeIndex().also { node -> node.reset(subItems.size) { visibleSubSize(subItems[it]) } }
+    }
+
+    /** Drops the index of the item and its expanded sub items */
+    private fun dropNodes(item: GenericItem) {
+        if (expandedNodes.remove(item) != null) {
+            (item as IParentItem<*>).subItems.forEach { dropNodes(it) }
+        }
+    }
+
+    /** Drops the index of the item and its expanded sub items, and marks them as collapsed */
+    private fun collapseNodes(item: GenericItem) {
+        if (expandedNodes.remove(item) != null) {
+            (item as? IExpandable<*>)?.isExpanded = false
+            (item as IParentItem<*>).subItems.forEach { collapseNodes(it) }
+        }
+    }
+
+    /** Searches the visible items in order, and counts the position up to the match */
+    private fun indexOf(siblings: List<GenericItem>, identifier: Long, position: IntArray): Boolean {
+        for (item in siblings) {
+            if (item.identifier == identifier) {
+                return true
+            }
+            position[0]++
+            if (expandedNodes.containsKey(item) && indexOf((item as IParentItem<*>).subItems, identifier, position)) {
+                return true
+            }
+        }
+        return false
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private val rootSiblings: MutableList<GenericItem>
+        get() = roots as MutableList<GenericItem>
+
+    /**
+     * An entry of a level within the hierarchy
+     *
+     * @param owner the parent item of the level, or null for the top level
+     */
+    private class Level(val owner: IParentItem<*>?, val siblings: MutableList<GenericItem>, val index: VisibleSizeIndex, val entry: Int)
+
+    /**
+     * The visible items as list, modifications done via this list are not notified (same as for the default item list)
+     *
+     * Same as for [set], a (flat) list including the visible sub items can be added, the sub items whose parent is added as well are skipped.
+     */
+    private inner class ItemsView : AbstractMutableList<Item>() {
+        override val size: Int
+            get() = this@ExpandableItemListImpl.size()
+
+        override fun get(index: Int): Item {
+            return this@ExpandableItemListImpl.get(index) ?: throw IndexOutOfBoundsException("Index: $index, Size: $size")
+        }
+
+        override fun add(index: Int, element: Item) {
+            insertAt(index, listOf(element))
+        }
+
+        override fun addAll(elements: Collection<Item>): Boolean {
+            if (isEmpty()) {
+                setRoots(ArrayList(elements))
+                return elements.isNotEmpty()
+            }
+            return addAll(size, elements)
+        }
+
+        override fun addAll(index: Int, elements: Collection<Item>): Boolean {
+            return insertAt(index, topLevel(elements)) > 0
+        }
+
+        override fun removeRange(fromIndex: Int, toIndex: Int) {
+            this@ExpandableItemListImpl.removeAt(fromIndex, toIndex - fromIndex)
+        }
+
+        override fun removeAt(index: Int): Item {
+            val item = get(index)
+            this@ExpandableItemListImpl.removeAt(index, 1)
+            return item
+        }
+
+        override fun set(index: Int, element: Item): Item {
+            val item = get(index)
+            replaceAt(index, element)
+            return item
+        }
+
+        override fun clear() {
+            setRoots(emptyList())
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.mikepenz.fastadapter.utils
 
-import androidx.recyclerview.widget.RecyclerView
 import com.mikepenz.fastadapter.FastAdapter
+import com.mikepenz.fastadapter.IAdapter
 import com.mikepenz.fastadapter.IExpandable
 import com.mikepenz.fastadapter.IItem
 import com.mikepenz.fastadapter.IItemAdapter
+import com.mikepenz.fastadapter.IParentItem
+import com.mikepenz.fastadapter.ISubItem
 import com.mikepenz.fastadapter.expandable.ExpandableExtension
 import com.mikepenz.fastadapter.select.SelectExtension
 import com.mikepenz.fastadapter.select.getSelectExtension
@@ -201,16 +203,24 @@ object SubItemUtil {
                         }
                     }
                     if (subItems[i] is IExpandable<*>) {
-                        selectAllSubItems(adapter, header, select, notifyParent, payload)
+                        selectAllSubItems(adapter, subItems[i] as T, select, notifyParent, payload)
                     }
                 }
             } else {
+                //the sub items are not displayed, select them via the extension so its selected items stay up to date
+                val extension: SelectExtension<T> = adapter.getSelectExtension()
                 for (i in subItems.indices) {
-                    if ((subItems[i] as IItem<*>).isSelectable) {
-                        (subItems[i] as IItem<*>).isSelected = select
+                    val subItem = subItems[i] as T
+                    if (subItem.isSelectable) {
+                        if (select) {
+                            extension.select(subItem, false)
+                        } else {
+                            extension.deselect(subItem)
+                        }
+                    }
+                    if (subItem is IExpandable<*>) {
+                        selectAllSubItems(adapter, subItem, select, notifyParent, payload)
                     }
-                    if (subItems[i] is IExpandable<*>)
-                        selectAllSubItems(adapter, header, select, notifyParent, payload)
                 }
             }
 
@@ -229,144 +239,176 @@ object SubItemUtil {
      * Deletes all selected items from the adapter respecting if the are sub items or not
      * subitems are removed from their parents sublists, main items are directly removed
      *
+     * Selected sub items of collapsed parents are deleted as well, even though they are currently not displayed.
+     *
      * Alternatively you might consider also looking at: [SelectExtension.deleteAllSelectedItems]
      *
+     * @param notifyParent       if true, headers of removed items will be notified about the change of their child items
      * @param deleteEmptyHeaders if true, empty headers will be removed from the adapter
      * @return List of items that have been removed from the adapter
      */
-    @JvmStatic fun deleteSelected(fastAdapter: FastAdapter<IItem<*>>, selectExtension: SelectExtension<*>, expandableExtension: ExpandableExtension<*>, notifyParent: Boolean, deleteEmptyHeaders: Boolean): List<IItem<*>> {
-        val deleted = ArrayList<IItem<*>>()
-
-        // we use a LinkedList, because this has performance advantages when modifying the listIterator during iteration!
-        // Modifying list is O(1)
-        val selectedItems = LinkedList(selectExtension.selectedItems)
-
-        // we delete item per item from the adapter directly or from the parent
-        // if keepEmptyHeaders is false, we add empty headers to the selected items set via the iterator, so that they are processed in the loop as well
-        var item: IItem<*>
-        var parent: IItem<*>?
-        var pos: Int
-        var parentPos: Int
-        var expanded: Boolean
-        val it = selectedItems.listIterator()
-        while (it.hasNext()) {
-            item = it.next()
-            pos = fastAdapter.getPosition(item)
-
-            // search for parent - if we find one, we remove the item from the parent's subitems directly
-            parent = getParent(item)
-            if (parent != null) {
-                parentPos = fastAdapter.getPosition(parent)
-                val subItems = parent.subItems
-                subItems.remove(item)
-                // check if parent is expanded and notify the adapter about the removed item, if necessary (only if parent is visible)
-                if (parentPos != RecyclerView.NO_POSITION && parent.isExpanded) {
-                    expandableExtension.notifyAdapterSubItemsChanged(parentPos, subItems.size + 1)
-                }
-
-                // if desired, notify the parent about its changed items (only if parent is visible!)
-                if (parentPos != RecyclerView.NO_POSITION && notifyParent) {
-                    expanded = parent.isExpanded
-                    fastAdapter.notifyAdapterItemChanged(parentPos)
-                    // expand the item again if it was expanded before calling notifyAdapterItemChanged
-                    if (expanded) {
-                        expandableExtension.expand(parentPos)
-                    }
-                }
-
-                deleted.add(item)
-
-                if (deleteEmptyHeaders && subItems.isEmpty()) {
-                    it.add(parent)
-                    it.previous()
-                }
-            } else if (pos != RecyclerView.NO_POSITION) {
-                // if we did not find a parent, we remove the item from the adapter
-                val adapter = fastAdapter.getAdapter(pos)
-                if (adapter is IItemAdapter<*, *>) {
-                    adapter.remove(pos)
-                }
-                deleted.add(item)
-            }
+    @JvmStatic fun deleteSelected(fastAdapter: FastAdapter<IItem<*>>, selectExtension: SelectExtension<*>, notifyParent: Boolean, deleteEmptyHeaders: Boolean): List<IItem<*>> {
+        val selectedItems: Set<IItem<*>> = selectExtension.selectedItems
+        if (selectedItems.isEmpty()) {
+            return ArrayList()
         }
-        return deleted
+        return delete(fastAdapter, notifyParent, deleteEmptyHeaders) { selectedItems.contains(it) }
+    }
+
+    /**
+     * Deletes all selected items from the adapter respecting if the are sub items or not
+     *
+     * @see deleteSelected
+     */
+    @Deprecated("The expandableExtension is not used anymore", ReplaceWith("deleteSelected(fastAdapter, selectExtension, notifyParent, deleteEmptyHeaders)"))
+    @JvmStatic fun deleteSelected(fastAdapter: FastAdapter<IItem<*>>, selectExtension: SelectExtension<*>, @Suppress("UNUSED_PARAMETER") expandableExtension: ExpandableExtension<*>, notifyParent: Boolean, deleteEmptyHeaders: Boolean): List<IItem<*>> {
+        return deleteSelected(fastAdapter, selectExtension, notifyParent, deleteEmptyHeaders)
     }
 
     /**
      * Deletes all items in identifiersToDelete collection from the adapter respecting if there are sub items or not
      * subitems are removed from their parents sublists, main items are directly removed
      *
+     * Matching sub items of collapsed parents are deleted as well, even though they are currently not displayed.
+     *
      * @param fastAdapter         the adapter to remove the items from
      * @param identifiersToDelete ids of items to remove
      * @param notifyParent        if true, headers of removed items will be notified about the change of their child items
      * @param deleteEmptyHeaders  if true, empty headers will be removed from the adapter
      * @return List of items that have been removed from the adapter
      */
-    @JvmStatic fun delete(fastAdapter: FastAdapter<IItem<*>>, expandableExtension: ExpandableExtension<*>, identifiersToDelete: Collection<Long>?, notifyParent: Boolean, deleteEmptyHeaders: Boolean): List<IItem<*>> {
-        val deleted = ArrayList<IItem<*>>()
+    @JvmStatic fun delete(fastAdapter: FastAdapter<IItem<*>>, identifiersToDelete: Collection<Long>?, notifyParent: Boolean, deleteEmptyHeaders: Boolean): List<IItem<*>> {
         if (identifiersToDelete == null || identifiersToDelete.isEmpty()) {
-            return deleted
+            return ArrayList()
         }
+        val identifiers = identifiersToDelete as? Set<Long> ?: HashSet(identifiersToDelete)
+        return delete(fastAdapter, notifyParent, deleteEmptyHeaders) { identifiers.contains(it.identifier) }
+    }
 
-        // we use a LinkedList, because this has performance advantages when modifying the listIterator during iteration!
-        // Modifying list is O(1)
-        val identifiers = LinkedList(identifiersToDelete)
+    /**
+     * Deletes all items in identifiersToDelete collection from the adapter respecting if there are sub items or not
+     *
+     * @see delete
+     */
+    @Deprecated("The expandableExtension is not used anymore", ReplaceWith("delete(fastAdapter, identifiersToDelete, notifyParent, deleteEmptyHeaders)"))
+    @JvmStatic fun delete(fastAdapter: FastAdapter<IItem<*>>, @Suppress("UNUSED_PARAMETER") expandableExtension: ExpandableExtension<*>, identifiersToDelete: Collection<Long>?, notifyParent: Boolean, deleteEmptyHeaders: Boolean): List<IItem<*>> {
+        return delete(fastAdapter, identifiersToDelete, notifyParent, deleteEmptyHeaders)
+    }
 
-        // we delete item per item from the adapter directly or from the parent
-        // if keepEmptyHeaders is false, we add empty headers to the selected items set via the iterator, so that they are processed in the loop as well
-        var item: IItem<*>?
-        var parent: IItem<*>?
-        var pos: Int
-        var parentPos: Int
-        var expanded: Boolean
-        var identifier: Long
-        val it = identifiers.listIterator()
-        while (it.hasNext()) {
-            identifier = it.next()
-
-            pos = fastAdapter.getPosition(identifier)
-            item = fastAdapter.getItem(pos) ?: continue
-
-            // search for parent - if we find one, we remove the item from the parent's subitems directly
-            parent = getParent(item)
-            if (parent != null) {
-                parentPos = fastAdapter.getPosition(parent)
-                val subItems = parent.subItems
-                // check if parent is expanded and notify the adapter about the removed item, if necessary (only if parent is visible)
-                if (parentPos != RecyclerView.NO_POSITION && parent.isExpanded) {
-                    expandableExtension.notifyAdapterSubItemsChanged(parentPos, subItems.size + 1)
-                }
+    /**
+     * Deletes all items matching the predicate, with a single pass over all items and their sub items (regardless of their current visibility).
+     *
+     * 1) the matching items are collected without modifying the hierarchy, headers which get empty are deleted as well (if desired)
+     * 2) the displayed items which got deleted (incl. the displayed sub items of a deleted header) are removed from the adapter, as contiguous ranges from the back
+     * 3) the remaining deleted sub items (of collapsed parents) are removed from their parents sublists
+     * 4) the displayed headers which lost sub items are notified (if desired)
+     *
+     * The hierarchy is only modified after the displayed ranges were removed, as item lists which resolve positions via the hierarchy
+     * (like [ExpandableItemListImpl]) remove displayed sub items from their parents themselves.
+     *
+     * @return List of items that have been removed
+     */
+    @JvmStatic private fun delete(fastAdapter: FastAdapter<IItem<*>>, notifyParent: Boolean, deleteEmptyHeaders: Boolean, predicate: (IItem<*>) -> Boolean): List<IItem<*>> {
+        val deleted = ArrayList<IItem<*>>()
+        val deletedSet = Collections.newSetFromMap(IdentityHashMap<IItem<*>, Boolean>())
+        val changedParents = Collections.newSetFromMap(IdentityHashMap<IItem<*>, Boolean>())
+        val itemCount = fastAdapter.itemCount
 
-                // if desired, notify the parent about it's changed items (only if parent is visible!)
-                if (parentPos != RecyclerView.NO_POSITION && notifyParent) {
-                    expanded = parent.isExpanded
-                    fastAdapter.notifyAdapterItemChanged(parentPos)
-                    // expand the item again if it was expanded before calling notifyAdapterItemChanged
-                    if (expanded) {
-                        expandableExtension.expand(parentPos)
-                    }
+        // 1) mark the hierarchy of every displayed item once, starting at its top most parent
+        val visitedRoots = Collections.newSetFromMap(IdentityHashMap<IItem<*>, Boolean>())
+        for (i in 0 until itemCount) {
+            val item = fastAdapter.getItem(i) ?: continue
+            var root: IItem<*> = item
+            while (true) {
+                root = (root as? ISubItem<*>)?.parent ?: break
+            }
+            if (visitedRoots.add(root) && mark(root, predicate, deleteEmptyHeaders, deleted, deletedSet, changedParents)) {
+                deleted.add(root)
+                deletedSet.add(root)
+            }
+        }
+
+        // 2) collect the displayed positions to remove as ranges, and the new positions of the changed parents
+        val rangeStarts = ArrayList<Int>()
+        val rangeCounts = ArrayList<Int>()
+        val parentPositions = ArrayList<Int>()
+        var rangeAdapter: IAdapter<*>? = null
+        var removedCount = 0
+        for (i in 0 until itemCount) {
+            val item = fastAdapter.getItem(i) ?: continue
+            if (isDeleted(item, deletedSet)) {
+                val adapter = fastAdapter.getAdapter(i)
+                val last = rangeStarts.size - 1
+                if (last >= 0 && adapter === rangeAdapter && rangeStarts[last] + rangeCounts[last] == i) {
+                    rangeCounts[last] = rangeCounts[last] + 1
+                } else {
+                    rangeStarts.add(i)
+                    rangeCounts.add(1)
+                    rangeAdapter = adapter
                 }
+                removedCount++
+            } else if (notifyParent && changedParents.contains(item)) {
+                parentPositions.add(i - removedCount)
+            }
+        }
 
-                deleted.add(item)
+        fastAdapter.batch {
+            for (r in rangeStarts.indices.reversed()) {
+                (getAdapter(rangeStarts[r]) as? IItemAdapter<*, *>)?.removeRange(rangeStarts[r], rangeCounts[r])
+            }
+        }
 
-                if (deleteEmptyHeaders && subItems.isEmpty()) {
-                    it.add(parent.identifier)
-                    it.previous()
-                }
-            } else if (pos != RecyclerView.NO_POSITION) {
-                // if we did not find a parent, we remove the item from the adapter
-                val adapter = fastAdapter.getAdapter(pos)
-                var success: Boolean
-                if (adapter is IItemAdapter<*, *>) {
-                    success = true
-                    if (success) {
-                        fastAdapter.notifyAdapterItemRemoved(pos)
-                    }
+        // 3) remove the deleted sub items from their parents, once per parent. Already removed sub items are not contained anymore
+        for (parent in changedParents) {
+            (parent as? IParentItem<*>)?.subItems?.removeAll { deletedSet.contains(it) }
+        }
+
+        // 4) we must notify the view only! otherwise the expandable extension would collapse the parents
+        for (position in parentPositions) {
+            fastAdapter.notifyItemChanged(position)
+        }
+
+        return deleted
+    }
+
+    /**
+     * Marks all sub items matching the predicate as deleted, recursively. The sub items are not modified
+     *
+     * @return true if the item itself has to be deleted
+     */
+    @JvmStatic private fun mark(item: IItem<*>, predicate: (IItem<*>) -> Boolean, deleteEmptyHeaders: Boolean, deleted: MutableList<IItem<*>>, deletedSet: MutableSet<IItem<*>>, changedParents: MutableSet<IItem<*>>): Boolean {
+        if (predicate(item)) {
+            // the sub items are deleted together with their parent
+            return true
+        }
+        if (item is IParentItem<*>) {
+            val subItems = item.subItems
+            var deletedCount = 0
+            for (subItem in subItems) {
+                if (mark(subItem, predicate, deleteEmptyHeaders, deleted, deletedSet, changedParents)) {
+                    deleted.add(subItem)
+                    deletedSet.add(subItem)
+                    deletedCount++
                 }
-                deleted.add(item)
+            }
+            if (deletedCount > 0) {
+                changedParents.add(item)
+                return deleteEmptyHeaders && deletedCount == subItems.size
             }
         }
-        return deleted
+        return false
+    }
+
+    /** @return true if the item or one of its parents got deleted */
+    @JvmStatic private fun isDeleted(item: IItem<*>, deletedSet: Set<IItem<*>>): Boolean {
+        var current: IItem<*>? = item
+        while (current != null) {
+            if (deletedSet.contains(current)) {
+                return true
+            }
+            current = (current as? ISubItem<*>)?.parent
+        }
+        return false
     }
 
     /**
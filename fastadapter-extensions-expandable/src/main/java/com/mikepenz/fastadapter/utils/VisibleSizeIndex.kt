@@ -0,0 +1,114 @@
+package com.mikepenz.fastadapter.utils
+
+/**
+ * Keeps the visible size (the entry itself plus its visible sub items) of a list of entries in a fenwick tree.
+ * Only the amount of visible sub items is stored per entry, so a list of collapsed entries does not require any work besides the allocation.
+ * Allows to resolve the entry at a visible position, and the visible position of an entry in O(log n), and to update the size of an entry in O(log n).
+ * Inserting or removing entries rebuilds the tree in O(n), as the entries after them have to be shifted anyway.
+ */
+internal class VisibleSizeIndex {
+    // the amount of visible sub items of each entry
+    private var subSizes = IntArray(0)
+    private var tree = IntArray(1)
+
+    /** The amount of entries */
+    var count = 0
+        private set
+
+    /** The amount of visible items, incl. the visible sub items of all entries */
+    var totalSize = 0
+        private set
+
+    /**
+     * Resets the index to the given amount of entries
+     *
+     * @param subSize provides the amount of visible sub items of the entry at the given index
+     */
+    fun reset(count: Int, subSize: (Int) -> Int) {
+        val subSizes = IntArray(count)
+        for (i in 0 until count) {
+            subSizes[i] = subSize(i)
+        }
+        rebuild(subSizes, count)
+    }
+
+    /** Inserts the entries with the given amount of visible sub items at the given index, in O(n) */
+    fun insert(index: Int, insertedSubSizes: IntArray) {
+        val subSizes = IntArray(count + insertedSubSizes.size)
+        System.arraycopy(this.subSizes, 0, subSizes, 0, index)
+        System.arraycopy(insertedSubSizes, 0, subSizes, index, insertedSubSizes.size)
+        System.arraycopy(this.subSizes, index, subSizes, index + insertedSubSizes.size, count - index)
+        rebuild(subSizes, subSizes.size)
+    }
+
+    /** Removes the given amount of entries starting at the given index, in O(n) */
+    fun remove(index: Int, removedCount: Int) {
+        System.arraycopy(subSizes, index + removedCount, subSizes, index, count - index - removedCount)
+        rebuild(subSizes, count - removedCount)
+    }
+
+    /** Changes the amount of visible sub items of the entry at the given index */
+    fun add(index: Int, delta: Int) {
+        subSizes[index] += delta
+        totalSize += delta
+        var i = index + 1
+        while (i <= count) {
+            tree[i] += delta
+            i += i and -i
+        }
+    }
+
+    /** @return the visible size of the entry at the given index, incl. the entry itself */
+    fun sizeOf(index: Int): Int = 1 + subSizes[index]
+
+    /** @return the visible position of the entry at the given index, relative to the first entry */
+    fun offsetOf(index: Int): Int {
+        var i = index
+        var sum = index
+        while (i > 0) {
+            sum += tree[i]
+            i -= i and -i
+        }
+        return sum
+    }
+
+    /**
+     * @param position the visible position relative to the first entry, requires `0 <= position < totalSize`
+     * @return the index of the entry which is, or contains the given position
+     */
+    fun indexOf(position: Int): Int {
+        var index = 0
+        var remaining = position
+        var step = Integer.highestOneBit(count)
+        while (step > 0) {
+            val next = index + step
+            // the node covers `step` entries, and their visible sub items
+            if (next <= count && step + tree[next] <= remaining) {
+                index = next
+                remaining -= step + tree[next]
+            }
+            step = step shr 1
+        }
+        return index
+    }
+
+    private fun rebuild(subSizes: IntArray, count: Int) {
+        this.subSizes = subSizes
+        this.count = count
+        if (tree.size < count + 1) {
+            tree = IntArray(count + 1)
+        } else {
+            tree.fill(0)
+        }
+        totalSize = count
+        for (i in 0 until count) {
+            tree[i + 1] += subSizes[i]
+            totalSize += subSizes[i]
+            // build the tree in O(n)
+            val parent = (i + 1) + ((i + 1) and -(i + 1))
+            if (parent <= count) {
+                tree[parent] += tree[i + 1]
+            }
+        }
+    }
+}
@@ -2,16 +2,26 @@ package com.mikepenz.fastadapter
 
 import android.os.Build
 import android.os.Bundle
+import androidx.recyclerview.widget.RecyclerView
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import com.mikepenz.fastadapter.adapters.ItemAdapter
+import com.mikepenz.fastadapter.diff.FastAdapterDiffUtil
 import com.mikepenz.fastadapter.expandable.ExpandableExtension
 import com.mikepenz.fastadapter.expandable.getExpandableExtension
 import com.mikepenz.fastadapter.select.SelectExtension
 import com.mikepenz.fastadapter.select.getSelectExtension
+import com.mikepenz.fastadapter.utils.AdapterUtil
+import com.mikepenz.fastadapter.utils.ExpandableItemListImpl
+import com.mikepenz.fastadapter.utils.SubItemUtil
 import org.assertj.core.api.Assertions.assertThat
+import org.junit.Assert.fail
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
+import org.mockito.Matchers.anyInt
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.never
+import org.mockito.Mockito.verify
 import org.robolectric.annotation.Config
 import java.util.*
 
@@ -105,6 +115,251 @@ class ExpandableFastAdapterTest {
         assertThat(expandableExtension.getExpandedItemsCount(0, 2210)).isEqualTo(0)
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun rangeChangedKeepsExpandedItems() {
+        val items = ExpandableTestDataGenerator.genTestItemWithSubItemsList(10, 1)
+        itemAdapter.set(items)
+
+        expandableExtension.expand(0)
+        expandableExtension.expand(11)
+
+        adapter.notifyAdapterItemRangeChanged(0, adapter.itemCount, "payload")
+        adapter.notifyAdapterItemRangeChanged(0, adapter.itemCount)
+
+        assertThat(adapter.itemCount).isEqualTo(30)
+        assertThat(expandableExtension.expandedItems).containsExactly(0, 11)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun expandCollapseExpandableItemList() {
+        val itemAdapter = ItemAdapter(ExpandableItemListImpl<ExpandableTestItem>())
+        val fastAdapter = FastAdapter.with(itemAdapter)
+        val expandableExtension = fastAdapter.getExpandableExtension()
+        itemAdapter.set(ExpandableTestDataGenerator.genTestItemWithSubItemsList(10, 2))
+
+        expandableExtension.expand(0)
+        expandableExtension.expand(10)
+
+        assertThat(fastAdapter.itemCount).isEqualTo(30)
+        assertThat(itemAdapter.getAdapterItem(13).identifier).isEqualTo(104)
+        assertThat(fastAdapter.getPosition(104)).isEqualTo(13)
+        assertThat(itemAdapter.adapterItems[21].identifier).isEqualTo(112)
+
+        expandableExtension.collapse(0)
+
+        assertThat(fastAdapter.itemCount).isEqualTo(10)
+        assertThat(itemAdapter.getAdapterItem(1).identifier).isEqualTo(112)
+        assertThat(expandableExtension.getExpandedItemsCount(0, 10)).isEqualTo(0)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun modifyExpandableItemListWithinExpandedItem() {
+        val itemAdapter = ItemAdapter(ExpandableItemListImpl<ExpandableTestItem>())
+        val fastAdapter = FastAdapter.with(itemAdapter)
+        val expandableExtension = fastAdapter.getExpandableExtension()
+        val items = withParents(ExpandableTestDataGenerator.genTestItemWithSubItemsList(10, 1))
+        itemAdapter.set(items)
+
+        expandableExtension.expand(0)
+
+        // add, remove and replace sub items via the positions within the expanded item
+        itemAdapter.add(1, ExpandableTestDataGenerator.genTestItem(1000))
+        itemAdapter.remove(2)
+        itemAdapter.set(1, ExpandableTestDataGenerator.genTestItem(1001))
+
+        assertThat(fastAdapter.itemCount).isEqualTo(20)
+        assertThat(items[0].subItems.map { (it as IItem<*>).identifier }).containsExactly(1001L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L)
+        assertThat(items[0].subItems[0].parent).isSameAs(items[0])
+        assertThat(itemAdapter.getAdapterItem(1).identifier).isEqualTo(1001)
+
+        // the position after the last sub item moves the item to the end of the sub items
+        itemAdapter.move(1, 10)
+
+        assertThat(items[0].subItems.map { (it as IItem<*>).identifier }).containsExactly(3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 1001L)
+        assertThat(itemAdapter.getAdapterItem(10).identifier).isEqualTo(1001)
+        assertThat(itemAdapter.getAdapterItem(11).identifier).isEqualTo(12)
+
+        // an expanded item is moved together with its sub items
+        itemAdapter.move(0, 1)
+
+        assertThat(itemAdapter.getAdapterItem(0).identifier).isEqualTo(12)
+        assertThat(itemAdapter.getAdapterItem(1).identifier).isEqualTo(1)
+        assertThat(itemAdapter.getAdapterItem(2).identifier).isEqualTo(3)
+        assertThat(itemAdapter.getAdapterItem(12).identifier).isEqualTo(23)
+        assertThat(items[0].isExpanded).isTrue()
+
+        // a top level item can not be moved into an expanded item, and stays untouched
+        try {
+            itemAdapter.move(0, 5)
+            fail("moving into another level must fail")
+        } catch (e: IllegalArgumentException) {
+            // expected
+        }
+
+        assertThat(fastAdapter.itemCount).isEqualTo(20)
+        assertThat(itemAdapter.getAdapterItem(0).identifier).isEqualTo(12)
+        assertThat(items[1].parent).isNull()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun expandableDiffExpandableItemList() {
+        val itemAdapter = ItemAdapter(ExpandableItemListImpl<ExpandableTestItem>())
+        val fastAdapter = FastAdapter.with(itemAdapter)
+        val expandableExtension = fastAdapter.getExpandableExtension()
+        val items = withParents(ExpandableTestDataGenerator.genTestItemWithSubItemsList(10, 1))
+        itemAdapter.set(items)
+
+        expandableExtension.expand(0)
+
+        // the diff sets the flat list of the visible items, the sub items must not be added a second time
+        FastAdapterDiffUtil.setExpandable(itemAdapter, items.filterIndexed { index, _ -> index != 1 })
+
+        assertThat(fastAdapter.itemCount).isEqualTo(19)
+        assertThat(itemAdapter.adapterItems).hasSize(19)
+        assertThat(itemAdapter.getAdapterItem(1).identifier).isEqualTo(2)
+        assertThat(itemAdapter.getAdapterItem(11).identifier).isEqualTo(23)
+        assertThat(items[0].isExpanded).isTrue()
+
+        // the default diff collapses the expanded items
+        FastAdapterDiffUtil.set(itemAdapter, items)
+
+        assertThat(fastAdapter.itemCount).isEqualTo(10)
+        assertThat(itemAdapter.adapterItems).hasSize(10)
+        assertThat(itemAdapter.getAdapterItem(1).identifier).isEqualTo(12)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun deleteSelectedExpandableItemList() {
+        val itemAdapter = ItemAdapter(ExpandableItemListImpl<ExpandableTestItem>())
+        val fastAdapter = FastAdapter.with(itemAdapter)
+        val expandableExtension = fastAdapter.getExpandableExtension()
+        val selectExtension = fastAdapter.getSelectExtension()
+        selectExtension.isSelectable = true
+        selectExtension.multiSelect = true
+        val items = deleteTestItems()
+        itemAdapter.set(items)
+
+        expandableExtension.expand(0)
+        selectExtension.select(2)
+        // a sub item of the collapsed item
+        selectExtension.select(items[2].subItems[1] as ExpandableTestItem, false)
+
+        val deleted = selectExtension.deleteAllSelectedItems()
+
+        assertThat(deleted.map { it.identifier }).containsExactly(3L, 8L)
+        assertThat(items[0].subItems.map { (it as IItem<*>).identifier }).containsExactly(2L, 4L)
+        assertThat(items[2].subItems.map { (it as IItem<*>).identifier }).containsExactly(7L)
+        assertThat(itemAdapter.adapterItems.map { it.identifier }).containsExactly(1L, 2L, 4L, 5L, 6L)
+        assertThat(selectExtension.selectedItems).isEmpty()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun deleteExpandableItemList() {
+        val itemAdapter = ItemAdapter(ExpandableItemListImpl<ExpandableTestItem>())
+        val fastAdapter = FastAdapter.with(itemAdapter)
+        val expandableExtension = fastAdapter.getExpandableExtension()
+        val items = deleteTestItems()
+        itemAdapter.set(items)
+
+        expandableExtension.expand(0)
+
+        @Suppress("UNCHECKED_CAST")
+        val deleted = SubItemUtil.delete(fastAdapter as FastAdapter<IItem<*>>, listOf(3L, 7L, 8L), notifyParent = true, deleteEmptyHeaders = true)
+
+        // the collapsed item lost all of its sub items, and is deleted as well
+        assertThat(deleted.map { it.identifier }).containsExactlyInAnyOrder(3L, 6L, 7L, 8L)
+        assertThat(items[0].subItems.map { (it as IItem<*>).identifier }).containsExactly(2L, 4L)
+        assertThat(items[2].subItems).isEmpty()
+        assertThat(itemAdapter.adapterItems.map { it.identifier }).containsExactly(1L, 2L, 4L, 5L)
+        assertThat(fastAdapter.getPosition(4)).isEqualTo(2)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun deleteIncludesHiddenSubItems() {
+        val items = withParents(ExpandableTestDataGenerator.genTestItemWithSubItemsList(10, 1))
+        itemAdapter.set(items)
+
+        expandableExtension.expand(1)
+
+        @Suppress("UNCHECKED_CAST")
+        val deleted = SubItemUtil.delete(adapter as FastAdapter<IItem<*>>, listOf(2L, 13L, 23L), notifyParent = true, deleteEmptyHeaders = false)
+
+        // the sub item of the collapsed first header is deleted as well as the displayed ones
+        assertThat(deleted.map { it.identifier }).containsExactlyInAnyOrder(2L, 13L, 23L)
+        assertThat(items[0].subItems).hasSize(9)
+        assertThat(items[0].subItems.map { (it as IItem<*>).identifier }).doesNotContain(2L)
+        assertThat(adapter.itemCount).isEqualTo(18)
+        assertThat(itemAdapter.getAdapterItem(2).identifier).isEqualTo(14)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun selectAllSubItemsOfCollapsedItem() {
+        val items = withParents(ExpandableTestDataGenerator.genTestItemWithSubItemsList(10, 1))
+        itemAdapter.set(items)
+        assertThat(selectExtension.selectedCount).isEqualTo(0)
+
+        SubItemUtil.selectAllSubItems(adapter, items[0], true, true, null)
+
+        // the hidden sub items are part of the selected items, but not of the displayed selections
+        assertThat(selectExtension.selectedCount).isEqualTo(10)
+        assertThat(selectExtension.selections).isEmpty()
+
+        expandableExtension.expand(0)
+        assertThat(selectExtension.selections).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10)
+
+        expandableExtension.collapse(0)
+        assertThat(selectExtension.selections).isEmpty()
+        assertThat(selectExtension.selectedCount).isEqualTo(10)
+
+        SubItemUtil.selectAllSubItems(adapter, items[0], false, true, null)
+        assertThat(selectExtension.selectedCount).isEqualTo(0)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun selectAllSubItemsDepth2() {
+        val items = withParents(ExpandableTestDataGenerator.genTestItemWithSubItemsList(3, 2))
+        itemAdapter.set(items)
+
+        SubItemUtil.selectAllSubItems(adapter, items[0], true, false, null)
+
+        // the sub items of the sub items are selected as well
+        assertThat(selectExtension.selectedCount).isEqualTo(12)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun removedParentDropsHiddenSelections() {
+        val items = withParents(ExpandableTestDataGenerator.genTestItemWithSubItemsList(10, 1))
+        itemAdapter.set(items)
+        SubItemUtil.selectAllSubItems(adapter, items[0], true, false, null)
+        assertThat(selectExtension.selectedCount).isEqualTo(10)
+
+        itemAdapter.remove(0)
+
+        assertThat(selectExtension.selectedCount).isEqualTo(0)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun restoreSubItemSelections() {
+        val items = withParents(ExpandableTestDataGenerator.genTestItemWithSubItemsList(10, 1))
+        itemAdapter.set(items)
+        assertThat(selectExtension.selectedCount).isEqualTo(0)
+
+        AdapterUtil.restoreSubItemSelectionStatesForAlternativeStateManagement(items[0], listOf("2", "3"), selectExtension)
+
+        assertThat(selectExtension.selectedItems.map { it.identifier }).containsExactlyInAnyOrder(2L, 3L)
+    }
+
     @Test
     @Throws(Exception::class)
     fun toggle() {
@@ -187,6 +442,92 @@ class ExpandableFastAdapterTest {
         assertThat(expandableExtension.getExpandedItemsCount(0, 100)).isEqualTo(0)
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun expandCollapseAllExpandableItemList() {
+        val itemAdapter = ItemAdapter(ExpandableItemListImpl<ExpandableTestItem>())
+        val fastAdapter = FastAdapter.with(itemAdapter)
+        val expandableExtension = fastAdapter.getExpandableExtension()
+        itemAdapter.set(withParents(ExpandableTestDataGenerator.genTestItemWithSubItemsList(10, 2)))
+
+        expandableExtension.expand()
+
+        // only the visible items are expanded, by one level
+        assertThat(fastAdapter.itemCount).isEqualTo(110)
+        assertThat(itemAdapter.getAdapterItem(2).identifier).isEqualTo(13)
+        assertThat(fastAdapter.getPosition(112)).isEqualTo(11)
+
+        expandableExtension.collapse()
+
+        assertThat(fastAdapter.itemCount).isEqualTo(10)
+        assertThat(itemAdapter.getAdapterItem(1).identifier).isEqualTo(112)
+        assertThat(expandableExtension.expandedItems).isEmpty()
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun expandAllNotifiesDataSetChangeForManyRanges() {
+        itemAdapter.set(ExpandableTestDataGenerator.genTestItemWithSubItemsList(20, 1))
+        val observer = mock(RecyclerView.AdapterDataObserver::class.java)
+        adapter.registerAdapterDataObserver(observer)
+
+        expandableExtension.expand(true)
+
+        assertThat(adapter.itemCount).isEqualTo(20 * 21)
+        verify(observer).onChanged()
+        verify(observer, never()).onItemRangeInserted(anyInt(), anyInt())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun expandCollapseAllMultipleAdapters() {
+        val itemAdapter1 = ItemAdapter<ExpandableTestItem>()
+        val itemAdapter2 = ItemAdapter<ExpandableTestItem>()
+        val fastAdapter = FastAdapter.with<ExpandableTestItem>(listOf(itemAdapter1, itemAdapter2))
+        val expandableExtension = fastAdapter.getExpandableExtension()
+        itemAdapter1.set(ExpandableTestDataGenerator.genTestItemWithSubItemsList(3, 1))
+        val items = ExpandableTestDataGenerator.genTestItemWithSubItemsList(3, 1)
+        itemAdapter2.set(items)
+        val observer = mock(RecyclerView.AdapterDataObserver::class.java)
+        fastAdapter.registerAdapterDataObserver(observer)
+
+        expandableExtension.expand(true)
+
+        // the ranges of the second adapter start after the expanded items of the first one
+        assertThat(fastAdapter.itemCount).isEqualTo(24)
+        assertThat(fastAdapter.getItem(12)).isSameAs(items[0])
+        assertThat(fastAdapter.getItem(13)).isSameAs(items[0].subItems[0])
+        verify(observer).onItemRangeInserted(1, 3)
+        verify(observer).onItemRangeInserted(13, 3)
+        verify(observer).onItemRangeInserted(21, 3)
+        verify(observer).onItemRangeChanged(12, 1, ExpandableExtension.PAYLOAD_EXPAND)
+
+        expandableExtension.collapse(true)
+
+        // the ranges are removed in the positions before the change
+        assertThat(fastAdapter.itemCount).isEqualTo(6)
+        assertThat(fastAdapter.getItem(3)).isSameAs(items[0])
+        verify(observer).onItemRangeRemoved(21, 3)
+        verify(observer).onItemRangeRemoved(13, 3)
+        verify(observer).onItemRangeRemoved(1, 3)
+        verify(observer).onItemRangeChanged(3, 1, ExpandableExtension.PAYLOAD_COLLAPSE)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun collapseAllNotifiesExpandedItemsWithoutSubItems() {
+        val items = ExpandableTestDataGenerator.genTestItemWithSubItemsList(3, 0)
+        items[1].isExpanded = true
+        itemAdapter.set(items)
+        val observer = mock(RecyclerView.AdapterDataObserver::class.java)
+        adapter.registerAdapterDataObserver(observer)
+
+        expandableExtension.collapse(true)
+
+        assertThat(items[1].isExpanded).isFalse()
+        verify(observer).onItemRangeChanged(1, 1, ExpandableExtension.PAYLOAD_COLLAPSE)
+    }
+
     @Test
     @Throws(Exception::class)
     fun saveEmptyInstanceState() {
@@ -216,4 +557,64 @@ class ExpandableFastAdapterTest {
         expandableExtension.saveInstanceState(bundle, "")
         assertThat(bundle.getLongArray("bundle_expanded")).isEqualTo(arrayOf(1L, 12L))
     }
+
+    @Test
+    @Throws(Exception::class)
+    fun restoreInstanceState() {
+        val items = withParents(ExpandableTestDataGenerator.genTestItemWithSubItemsList(10, 1))
+        // sub items without identifiers, which get them from the id distributor once they are displayed
+        val parent = ExpandableTestDataGenerator.genTestItem(1000)
+        val subItems = listOf(ExpandableTestItem(), ExpandableTestItem())
+        parent.subItems.addAll(subItems)
+        itemAdapter.set(items + withParents(listOf(parent)))
+
+        val bundle = Bundle()
+        bundle.putLongArray("bundle_expanded", longArrayOf(1L, 12L, 1000L))
+        bundle.putLongArray("bundle_selections", longArrayOf(3L, 13L, 24L))
+        adapter.withSavedInstanceState(bundle)
+
+        assertThat(adapter.itemCount).isEqualTo(33)
+        assertThat(itemAdapter.getAdapterItem(12).identifier).isEqualTo(13)
+        assertThat(expandableExtension.expandedItems).containsExactly(0, 11, 30)
+        // the selected sub item of the collapsed item is restored as well
+        assertThat(selectExtension.selections).containsExactly(2, 12)
+        assertThat(selectExtension.selectedItems.map { it.identifier }).containsExactlyInAnyOrder(3L, 13L, 24L)
+        assertThat(subItems.map { it.identifier }).doesNotContain(-1L)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun expandAllDistributesIdentifiers() {
+        val items = ExpandableTestDataGenerator.genTestItemWithSubItemsList(2, 0)
+        // sub items without identifiers, which get them from the id distributor once they are displayed
+        val subItems = listOf(ExpandableTestItem(), ExpandableTestItem(), ExpandableTestItem())
+        items[0].subItems.addAll(subItems.subList(0, 2))
+        items[1].subItems.add(subItems[2])
+        itemAdapter.set(withParents(items))
+
+        expandableExtension.expand()
+
+        assertThat(adapter.itemCount).isEqualTo(5)
+        assertThat(subItems.map { it.identifier }).doesNotContain(-1L)
+        assertThat(subItems.map { it.identifier }.toSet()).hasSize(3)
+        assertThat(adapter.getPosition(subItems[2].identifier)).isEqualTo(4)
+    }
+
+    /** @return an item with the sub items 2, 3, 4, an item without sub items, and an item with the sub items 7, 8 */
+    private fun deleteTestItems(): List<ExpandableTestItem> {
+        val items = listOf(1, 5, 6).map { ExpandableTestDataGenerator.genTestItem(it) }
+        items[0].subItems.addAll(listOf(2, 3, 4).map { ExpandableTestDataGenerator.genTestItem(it) })
+        items[2].subItems.addAll(listOf(7, 8).map { ExpandableTestDataGenerator.genTestItem(it) })
+        return withParents(items)
+    }
+
+    /** Sets the parents of the sub items, as done by the sub item list of real items */
+    private fun withParents(items: List<ExpandableTestItem>): List<ExpandableTestItem> {
+        items.forEach { item ->
+            item.subItems.forEach { (it as ExpandableTestItem).parent = item }
+            @Suppress("UNCHECKED_CAST")
+            withParents(item.subItems as List<ExpandableTestItem>)
+        }
+        return items
+    }
 }
@@ -0,0 +1,144 @@
+package com.mikepenz.fastadapter.paged
+
+import androidx.paging.PagedList
+import com.mikepenz.fastadapter.GenericItem
+import com.mikepenz.fastadapter.IExpandable
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * A [PagedItemCache] keeping the least recently used items up to a maximum size.
+ *
+ * Items which carry state, selected or expanded items (see [isRetained]), are never evicted, as an item intercepted again
+ * for the same model would be a new instance without that state. The cache may exceed its maximum size by the count of those items.
+ *
+ * @param maxSize the maximum count of items kept, or [WINDOW_SIZE] to size the cache to a window around the loaded pages of the current [PagedList]
+ */
+@ExperimentalPagedSupport
+open class LruPagedItemCache<Model, Item : GenericItem> @JvmOverloads constructor(
+        private val maxSize: Int = WINDOW_SIZE
+) : PagedItemCache<Model, Item> {
+
+    // in the order of their last access, the least recently used item first
+    private val entries = LinkedHashMap<Model, Item>(INITIAL_CAPACITY, LOAD_FACTOR)
+
+    /** The currently applied maximum size */
+    var currentMaxSize: Int = if (maxSize == WINDOW_SIZE) DEFAULT_WINDOW_SIZE else maxSize
+        private set
+
+    override var hitCount: Int = 0
+        protected set
+
+    override var missCount: Int = 0
+        protected set
+
+    override var evictionCount: Int = 0
+        protected set
+
+    override val size: Int
+        get() = entries.size
+
+    override fun get(model: Model): Item? {
+        val item = entries.remove(model)
+        if (item != null) {
+            //re-insert to mark it as the most recently used item
+            entries[model] = item
+            hitCount++
+        } else {
+            missCount++
+        }
+        return item
+    }
+
+    override fun peek(model: Model): Item? {
+        return entries[model]
+    }
+
+    override fun put(model: Model, item: Item) {
+        entries.remove(model)
+        entries[model] = item
+        trimToSize(currentMaxSize)
+    }
+
+    /**
+     * Defines if the item must not be evicted, as it carries state which would be lost with a new instance for its model
+     *
+     * @return true for selected or expanded items
+     */
+    protected open fun isRetained(item: Item): Boolean {
+        return item.isSelected || (item as? IExpandable<*>)?.isExpanded == true
+    }
+
+    override fun onCurrentListChanged(currentList: PagedList<Model>?) {
+        if (currentList == null) {
+            clear()
+            return
+        }
+        if (maxSize == WINDOW_SIZE) {
+            currentMaxSize = windowSize(currentList.config)
+        }
+
+        //only keep the items of models which are loaded in the new list, and the items carrying state
+        val loaded = HashSet<Model>()
+        val start = currentList.positionOffset
+        val end = min(currentList.size, start + currentList.loadedCount)
+        for (i in start until end) {
+            currentList[i]?.let { loaded.add(it) }
+        }
+        val iterator = entries.entries.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (!loaded.contains(entry.key) && !isRetained(entry.value)) {
+                iterator.remove()
+                evictionCount++
+            }
+        }
+        trimToSize(currentMaxSize)
+    }
+
+    override fun clear() {
+        entries.clear()
+    }
+
+    /** Removes the least recently used items until the cache fits the given size, retained items are skipped */
+    private fun trimToSize(maxSize: Int) {
+        if (entries.size <= maxSize) {
+            return
+        }
+        val retained = ArrayList<Map.Entry<Model, Item>>()
+        val iterator = entries.entries.iterator()
+        while (entries.size > maxSize && iterator.hasNext()) {
+            val entry = iterator.next()
+            if (isRetained(entry.value)) {
+                retained.add(entry)
+                continue
+            }
+            iterator.remove()
+            evictionCount++
+        }
+        //move the skipped items to the end, so the next trim does not visit them again
+        retained.forEach { (model, item) ->
+            entries.remove(model)
+            entries[model] = item
+        }
+    }
+
+    companion object {
+        /** Sizes the cache to a window around the loaded pages, based on the [PagedList.Config] */
+        const val WINDOW_SIZE = -1
+
+        // used until the first list is submitted
+        private const val DEFAULT_WINDOW_SIZE = 200
+        private const val INITIAL_CAPACITY = 16
+        private const val LOAD_FACTOR = 0.75f
+
+        /**
+         * @return the count of items loaded initially, plus a page and the prefetch distance into each direction
+         */
+        @JvmStatic
+        fun windowSize(config: PagedList.Config): Int {
+            val window = config.initialLoadSizeHint + 2 * (config.pageSize + config.prefetchDistance)
+            return if (config.maxSize != PagedList.Config.MAX_SIZE_UNBOUNDED) max(window, config.maxSize) else window
+        }
+    }
+}
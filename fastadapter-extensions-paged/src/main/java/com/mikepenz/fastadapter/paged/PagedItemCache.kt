@@ -0,0 +1,42 @@
+package com.mikepenz.fastadapter.paged
+
+import androidx.paging.PagedList
+import com.mikepenz.fastadapter.GenericItem
+
+/**
+ * The cache used by the [PagedItemListImpl] to keep the intercepted items for the models of the [PagedList]
+ */
+@ExperimentalPagedSupport
+interface PagedItemCache<Model, Item : GenericItem> {
+
+    /** The count of lookups which found an item */
+    val hitCount: Int
+
+    /** The count of lookups which did not find an item */
+    val missCount: Int
+
+    /** The count of items removed from the cache to keep it within its bounds */
+    val evictionCount: Int
+
+    /** The count of items currently kept in the cache */
+    val size: Int
+
+    operator fun get(model: Model): Item?
+
+    /**
+     * Looks up the item of the model without counting the lookup, or marking the item as used
+     */
+    fun peek(model: Model): Item? = get(model)
+
+    fun put(model: Model, item: Item)
+
+    /**
+     * Called whenever the [PagedList] shown by the [PagedItemListImpl] is swapped.
+     * Allows to drop the items for models which are no longer part of the list.
+     *
+     * @param currentList the new list, or null if the list was cleared
+     */
+    fun onCurrentListChanged(currentList: PagedList<Model>?)
+
+    fun clear()
+}
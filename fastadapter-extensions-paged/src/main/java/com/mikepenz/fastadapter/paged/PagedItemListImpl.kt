@@ -9,6 +9,9 @@ import com.mikepenz.fastadapter.GenericItem
 import com.mikepenz.fastadapter.IAdapterNotifier
 import com.mikepenz.fastadapter.IIdDistributor
 import com.mikepenz.fastadapter.utils.DefaultItemList
+import com.mikepenz.fastadapter.utils.LongIntHashMap
+import java.util.AbstractList
+import kotlin.math.min
 
 /**
  * A item list implementation to support the PagedList from the `androidx.paging:paging-runtime` jetpack library
@@ -20,52 +23,151 @@ open class PagedItemListImpl<Model, Item : GenericItem>(
         var placeholderInterceptor: (position: Int) -> Item = getDefaultPlaceholderInterceptor(),
         var interceptor: (element: Model) -> Item?
 ) : DefaultItemList<Item>() {
-    val differ: AsyncPagedListDiffer<Model> = AsyncPagedListDiffer<Model>(listUpdateCallback, differConfig)
+    // identifier -> position of the items intercepted so far, filled as pages are loaded and bound. Entries are verified on lookup
+    private val identifierIndex = LongIntHashMap()
+    // model -> identifier distributed to its item, so an item intercepted again after its eviction from the cache keeps its identifier
+    private val distributedIdentifiers = HashMap<Model, Long>()
+
+    val differ: AsyncPagedListDiffer<Model> = AsyncPagedListDiffer<Model>(object : ListUpdateCallback {
+        override fun onInserted(position: Int, count: Int) {
+            identifierIndex.clear()
+            listUpdateCallback.onInserted(position, count)
+        }
+
+        override fun onRemoved(position: Int, count: Int) {
+            identifierIndex.clear()
+            listUpdateCallback.onRemoved(position, count)
+        }
+
+        override fun onMoved(fromPosition: Int, toPosition: Int) {
+            identifierIndex.clear()
+            listUpdateCallback.onMoved(fromPosition, toPosition)
+        }
+
+        override fun onChanged(position: Int, count: Int, payload: Any?) {
+            listUpdateCallback.onChanged(position, count, payload)
+        }
+    }, differConfig)
+
+    private val itemsView = ItemsView()
 
     var idDistributor: IIdDistributor<Item> = IIdDistributor.DEFAULT as IIdDistributor<Item>
 
-    private val cache: HashMap<Model, Item> = hashMapOf()
+    /**
+     * The cache keeping the intercepted items for the models of the current [PagedList].
+     * Defaults to a LRU cache sized to a window around the loaded pages.
+     */
+    var cache: PagedItemCache<Model, Item> = LruPagedItemCache()
+        set(value) {
+            field.clear()
+            field = value
+        }
+
+    init {
+        differ.addPagedListListener { _, currentList ->
+            identifierIndex.clear()
+            retainDistributedIdentifiers(currentList)
+            cache.onCurrentListChanged(currentList)
+        }
+    }
 
     /**
      * Defines if the DefaultIdDistributor is used to provide an ID to all added items which do not yet define an id
      */
     var isUseIdDistributor = true
 
+    /**
+     * A read-only view on the current [PagedList]. Items are intercepted on access, and accessing them does not load further pages.
+     * Positions containing a placeholder are provided via the [placeholderInterceptor].
+     */
     override val items: MutableList<Item>
-        get() = differ.currentList?.mapNotNull { getItem(it) }?.toMutableList() ?: mutableListOf()// Note this is not efficient
+        get() = itemsView
 
     override val isEmpty: Boolean
         get() = differ.currentList?.isEmpty() == true
 
     override fun get(position: Int): Item {
-        return differ.getItem(position)?.let { getItem(it) } ?: run {
+        return differ.getItem(position)?.let { getItem(it, position) } ?: run {
             Log.d(TAG, "Position currently contains a placeholder")
             placeholderInterceptor.invoke(position)
         }
     }
 
     override fun peek(position: Int): Item? {
-        return if (differ.itemCount > position) {
-            differ.currentList?.subList(position, position + 1)?.first()?.let { cache[it] }
+        val currentList = differ.currentList ?: return null
+        return if (position in 0 until currentList.size) {
+            currentList[position]?.let { cache.peek(it) }
         } else {
             null
         }
     }
 
-    private fun getItem(model: Model): Item? {
-        return cache[model] ?: run {
-            return interceptor.invoke(model)?.let {
-                if (isUseIdDistributor) {
-                    idDistributor.checkId(it)
-                }
-                cache[model] = it
-                it
+    private fun getItem(model: Model, position: Int): Item? {
+        val item = cache[model] ?: intercept(model)?.also { cache.put(model, it) }
+        item?.let { identifierIndex.put(it.identifier, position) }
+        return item
+    }
+
+    /** Intercepts the model, an identifier distributed to a previous item of the same model is reused */
+    private fun intercept(model: Model): Item? {
+        val item = interceptor.invoke(model) ?: return null
+        if (isUseIdDistributor && item.identifier == -1L) {
+            val identifier = distributedIdentifiers[model]
+            if (identifier != null) {
+                item.identifier = identifier
+            } else {
+                idDistributor.checkId(item)
+                distributedIdentifiers[model] = item.identifier
             }
         }
+        return item
     }
 
-    override fun getAdapterPosition(identifier: Long): Int = differ.currentList?.indexOfFirst { getItem(it)?.identifier == identifier }
-            ?: throw RuntimeException("No item found at position")
+    /** Drops the distributed identifiers of models which are not loaded in the new list */
+    private fun retainDistributedIdentifiers(currentList: PagedList<Model>?) {
+        if (currentList == null) {
+            distributedIdentifiers.clear()
+            return
+        }
+        if (distributedIdentifiers.isEmpty()) {
+            return
+        }
+        val loaded = HashSet<Model>()
+        val start = currentList.positionOffset
+        val end = min(currentList.size, start + currentList.loadedCount)
+        for (i in start until end) {
+            currentList[i]?.let { loaded.add(it) }
+        }
+        distributedIdentifiers.keys.retainAll(loaded)
+    }
+
+    /**
+     * Searches the identifier in the index of already intercepted items, falls back to the loaded items of the [PagedList].
+     * Models without a cached item are intercepted for the comparison without adding them to the cache, only the found item is cached.
+     * This does not load further pages.
+     *
+     * @return the relative position, or -1 if no loaded item has the identifier
+     */
+    override fun getAdapterPosition(identifier: Long): Int {
+        val currentList = differ.currentList ?: return -1
+        val indexed = identifierIndex[identifier]
+        if (indexed in 0 until currentList.size && peek(indexed)?.identifier == identifier) {
+            return indexed
+        }
+        for (i in 0 until currentList.size) {
+            val model = currentList[i] ?: continue
+            val cached = cache.peek(model)
+            val item = cached ?: intercept(model) ?: continue
+            if (item.identifier == identifier) {
+                if (cached == null) {
+                    cache.put(model, item)
+                }
+                identifierIndex.put(identifier, i)
+                return i
+            }
+        }
+        return -1
+    }
 
     /** Managed by the [PagedList] not supported to be managed via the [PagedModelAdapter] */
     override fun remove(position: Int, preItemCount: Int) {
@@ -197,6 +299,19 @@ open class PagedItemListImpl<Model, Item : GenericItem>(
         differ.removePagedListListener(listener)
     }
 
+    /**
+     * A read-only [List] view on the current [PagedList], intercepting the models on access
+     */
+    private inner class ItemsView : AbstractList<Item>(), RandomAccess {
+        override val size: Int
+            get() = differ.currentList?.size ?: 0
+
+        override fun get(index: Int): Item {
+            val currentList = differ.currentList ?: throw IndexOutOfBoundsException("Index: $index, Size: 0")
+            return currentList[index]?.let { getItem(it, index) } ?: placeholderInterceptor.invoke(index)
+        }
+    }
+
     companion object {
         private const val TAG = "PagedItemListImpl"
 
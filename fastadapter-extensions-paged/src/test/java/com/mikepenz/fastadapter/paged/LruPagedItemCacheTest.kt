@@ -0,0 +1,61 @@
+package com.mikepenz.fastadapter.paged
+
+import android.os.Build
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@OptIn(ExperimentalPagedSupport::class)
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [Build.VERSION_CODES.P])
+class LruPagedItemCacheTest {
+    private val cache = LruPagedItemCache<String, PagedTestItem>(3)
+
+    @Test
+    fun evictsLeastRecentlyUsed() {
+        listOf("a", "b", "c").forEach { cache.put(it, PagedTestItem(it)) }
+
+        assertThat(cache["a"]).isNotNull
+        cache.put("d", PagedTestItem("d"))
+
+        assertThat(cache.size).isEqualTo(3)
+        assertThat(cache.peek("b")).isNull()
+        assertThat(cache.peek("a")).isNotNull
+        assertThat(cache.evictionCount).isEqualTo(1)
+        assertThat(cache.hitCount).isEqualTo(1)
+        assertThat(cache.missCount).isEqualTo(0)
+    }
+
+    @Test
+    fun peekDoesNotMarkAsUsed() {
+        listOf("a", "b", "c").forEach { cache.put(it, PagedTestItem(it)) }
+
+        assertThat(cache.peek("a")).isNotNull
+        cache.put("d", PagedTestItem("d"))
+
+        assertThat(cache.peek("a")).isNull()
+        assertThat(cache.hitCount).isEqualTo(0)
+    }
+
+    @Test
+    fun retainsItemsWithState() {
+        val selected = PagedTestItem("a").apply { isSelected = true }
+        cache.put("a", selected)
+        listOf("b", "c", "d", "e").forEach { cache.put(it, PagedTestItem(it)) }
+
+        // the selected item is kept although it is the least recently used one
+        assertThat(cache.peek("a")).isSameAs(selected)
+        assertThat(cache.peek("b")).isNull()
+        assertThat(cache.peek("c")).isNull()
+        assertThat(cache.size).isEqualTo(3)
+
+        selected.isSelected = false
+        cache.put("f", PagedTestItem("f"))
+        cache.put("g", PagedTestItem("g"))
+
+        assertThat(cache.peek("a")).isNull()
+        assertThat(cache.size).isEqualTo(3)
+    }
+}
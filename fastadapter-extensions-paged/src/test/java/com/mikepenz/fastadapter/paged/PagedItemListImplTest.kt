@@ -0,0 +1,105 @@
+package com.mikepenz.fastadapter.paged
+
+import android.os.Build
+import androidx.paging.PagedList
+import androidx.paging.PositionalDataSource
+import androidx.recyclerview.widget.AsyncDifferConfig
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListUpdateCallback
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import kotlin.math.min
+
+@OptIn(ExperimentalPagedSupport::class)
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [Build.VERSION_CODES.P])
+class PagedItemListImplTest {
+    private val models = (0 until 20).map { "model$it" }
+    private lateinit var itemList: PagedItemListImpl<String, PagedTestItem>
+
+    @Before
+    fun setUp() {
+        val differConfig = AsyncDifferConfig.Builder(object : DiffUtil.ItemCallback<String>() {
+            override fun areItemsTheSame(oldItem: String, newItem: String): Boolean = oldItem == newItem
+            override fun areContentsTheSame(oldItem: String, newItem: String): Boolean = oldItem == newItem
+        }).build()
+        itemList = PagedItemListImpl(NO_OP_CALLBACK, differConfig) {
+            PagedTestItem(it)
+        }
+        itemList.cache = LruPagedItemCache(3)
+        itemList.submitList(pagedList())
+    }
+
+    @Test
+    fun evictedItemKeepsDistributedIdentifier() {
+        val first = itemList[0]
+        assertThat(first.identifier).isNotEqualTo(-1L)
+
+        (1..3).forEach { itemList[it] }
+        val intercepted = itemList[0]
+
+        // the evicted item was intercepted again, with the identifier of the previous item
+        assertThat(intercepted).isNotSameAs(first)
+        assertThat(intercepted.identifier).isEqualTo(first.identifier)
+    }
+
+    @Test
+    fun selectedItemIsNotEvicted() {
+        val first = itemList[0]
+        first.isSelected = true
+
+        (1..10).forEach { itemList[it] }
+
+        assertThat(itemList[0]).isSameAs(first)
+        assertThat(itemList[0].isSelected).isTrue()
+    }
+
+    @Test
+    fun getAdapterPositionDoesNotFillCache() {
+        val lastIdentifier = itemList[19].identifier
+        itemList.cache.clear()
+        (0..2).forEach { itemList[it] }
+        val missCount = itemList.cache.missCount
+
+        assertThat(itemList.getAdapterPosition(Long.MAX_VALUE)).isEqualTo(-1)
+        assertThat(itemList.cache.size).isEqualTo(3)
+        assertThat(itemList.cache.peek("model0")).isNotNull
+
+        // the scanned items are not added to the cache, only the found one
+        assertThat(itemList.getAdapterPosition(lastIdentifier)).isEqualTo(19)
+        assertThat(itemList.cache.peek("model19")).isNotNull
+        assertThat(itemList.cache.peek("model2")).isNotNull
+        assertThat(itemList.cache.peek("model1")).isNotNull
+        assertThat(itemList.cache.missCount).isEqualTo(missCount)
+    }
+
+    private fun pagedList(): PagedList<String> {
+        val dataSource = object : PositionalDataSource<String>() {
+            override fun loadInitial(params: LoadInitialParams, callback: LoadInitialCallback<String>) {
+                callback.onResult(models, 0, models.size)
+            }
+
+            override fun loadRange(params: LoadRangeParams, callback: LoadRangeCallback<String>) {
+                callback.onResult(models.subList(params.startPosition, min(models.size, params.startPosition + params.loadSize)))
+            }
+        }
+        val config = PagedList.Config.Builder().setPageSize(20).setEnablePlaceholders(false).build()
+        return PagedList.Builder(dataSource, config)
+                .setNotifyExecutor { it.run() }
+                .setFetchExecutor { it.run() }
+                .build()
+    }
+
+    companion object {
+        private val NO_OP_CALLBACK = object : ListUpdateCallback {
+            override fun onInserted(position: Int, count: Int) {}
+            override fun onRemoved(position: Int, count: Int) {}
+            override fun onMoved(fromPosition: Int, toPosition: Int) {}
+            override fun onChanged(position: Int, count: Int, payload: Any?) {}
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.mikepenz.fastadapter.paged
+
+import android.view.View
+import androidx.recyclerview.widget.RecyclerView
+import com.mikepenz.fastadapter.items.AbstractItem
+
+class PagedTestItem(val model: String) : AbstractItem<PagedTestItem.ViewHolder>() {
+    override val layoutRes: Int
+        get() = -1
+
+    override val type: Int
+        get() = -1
+
+    override fun getViewHolder(v: View): ViewHolder = ViewHolder(v)
+
+    class ViewHolder(view: View) : RecyclerView.ViewHolder(view)
+}
@@ -11,6 +11,7 @@ import androidx.recyclerview.widget.ItemTouchHelper
 import androidx.recyclerview.widget.RecyclerView
 import com.mikepenz.fastadapter.FastAdapter
 import com.mikepenz.fastadapter.IItem
+import com.mikepenz.fastadapter.utils.LongIntHashMap
 import kotlin.math.abs
 
 
@@ -35,9 +36,22 @@ class SimpleSwipeDrawerCallback @JvmOverloads constructor(private val swipeDirs:
      *   Key = item unique ID
      *   Value = swiped direction (see {@link androidx.recyclerView.widget.ItemTouchHelper})
      *
-     * NB : As this class doesn't listen to the recyclerView, it may contain identifiers for old items that have been removed
+     * Identifiers of removed items are pruned when the adapter notifies about removed items, or a changed data set
      */
-    private val swipedStates = HashMap<Long, Int>()
+    private val swipedStates = LongIntHashMap()
+
+    // The adapter the swipedStates are pruned for
+    private var observedAdapter: RecyclerView.Adapter<*>? = null
+
+    private val swipedStatesObserver = object : RecyclerView.AdapterDataObserver() {
+        override fun onChanged() {
+            pruneSwipedStates()
+        }
+
+        override fun onItemRangeRemoved(positionStart: Int, itemCount: Int) {
+            pruneSwipedStates()
+        }
+    }
 
     // True if a swiping gesture is currently being done
     var isSwiping = false
@@ -114,7 +128,7 @@ class SimpleSwipeDrawerCallback @JvmOverloads constructor(private val swipeDirs:
     override fun onSwiped(viewHolder: RecyclerView.ViewHolder, direction: Int) {
         val position = viewHolder.bindingAdapterPosition
         val id = viewHolder.itemId
-        if (position != RecyclerView.NO_POSITION && (!swipedStates.containsKey(id) || swipedStates[id] != direction)) {
+        if (position != RecyclerView.NO_POSITION && swipedStates[id] != direction) {
             itemSwipeCallback?.itemSwiped(position, direction)
             swipedStates[id] = direction
             isSwiping = false
@@ -145,6 +159,7 @@ class SimpleSwipeDrawerCallback @JvmOverloads constructor(private val swipeDirs:
             recyclerView.setOnTouchListener(RecyclerTouchTransmitter())
             touchTransmitterSet = true
         }
+        observeAdapter(recyclerView.adapter)
 
         val position = viewHolder.bindingAdapterPosition
 
@@ -175,6 +190,40 @@ class SimpleSwipeDrawerCallback @JvmOverloads constructor(private val swipeDirs:
         } else super.onChildDraw(c, recyclerView, viewHolder, dX, dY, actionState, isCurrentlyActive)
     }
 
+    /**
+     * Listens to the given adapter to prune the swiped states of removed items
+     */
+    private fun observeAdapter(adapter: RecyclerView.Adapter<*>?) {
+        if (adapter === observedAdapter) return
+        observedAdapter?.unregisterAdapterDataObserver(swipedStatesObserver)
+        adapter?.registerAdapterDataObserver(swipedStatesObserver)
+        observedAdapter = adapter
+        pruneSwipedStates()
+    }
+
+    /**
+     * Drops the swiped states of items which are no longer part of the adapter
+     */
+    private fun pruneSwipedStates() {
+        if (swipedStates.isEmpty) return
+        val adapter = observedAdapter
+        if (adapter == null) {
+            swipedStates.clear()
+            return
+        }
+        swipedStates.removeIf { id, _ -> !adapter.containsItemId(id) }
+    }
+
+    private fun RecyclerView.Adapter<*>.containsItemId(id: Long): Boolean {
+        if (this is FastAdapter<*>) {
+            return getPosition(id) != RecyclerView.NO_POSITION
+        }
+        for (i in 0 until itemCount) {
+            if (getItemId(i) == id) return true
+        }
+        return false
+    }
+
     /**
      * Hack to force-transmit click events to the first visible View at the clicked coordinates
      * [< swiped area ] exposed sublayer ]
@@ -186,9 +235,12 @@ class SimpleSwipeDrawerCallback @JvmOverloads constructor(private val swipeDirs:
 
         private var recyclerView: RecyclerView? = null
 
+        // Reused for every hit test, touch events are dispatched on the main thread only
+        private val hitRect = Rect()
+
         override fun onTouch(v: View?, event: MotionEvent): Boolean {
             // No need for that when nothing is swiped or when swiping is in progress
-            if (isSwiping || null == v || v !is ViewGroup) return false
+            if (isSwiping || swipedStates.isEmpty || null == v || v !is ViewGroup) return false
 
             if (v is RecyclerView) recyclerView = v
 
@@ -214,20 +266,19 @@ class SimpleSwipeDrawerCallback @JvmOverloads constructor(private val swipeDirs:
 
             // If target viewHolder isn't swiped, don't bother going further
             if (this.parent == recyclerView) {
-                val viewHolder = recyclerView?.getChildViewHolder(this)
-                if (!swipedStates.containsKey(viewHolder?.itemId)) return null
+                val viewHolder = recyclerView?.getChildViewHolder(this) ?: return null
+                if (!swipedStates.containsKey(viewHolder.itemId)) return null
             }
 
-            (childCount - 1 downTo 0)
-                    .map { this.getChildAt(it) }
-                    .forEach {
-                        val bounds = Rect()
-                        it.getHitRect(bounds)
-                        if (bounds.contains(x.toInt(), y.toInt()) && VISIBLE == it.visibility) {
-                            return if (it is ViewGroup) it.getFirstVisibleViewByCoordinates(x - bounds.left, y - bounds.top)
-                            else it
-                        }
-                    }
+            for (i in childCount - 1 downTo 0) {
+                val child = getChildAt(i)
+                if (VISIBLE != child.visibility) continue
+                child.getHitRect(hitRect)
+                if (hitRect.contains(x.toInt(), y.toInt())) {
+                    return if (child is ViewGroup) child.getFirstVisibleViewByCoordinates(x - hitRect.left, y - hitRect.top)
+                    else child
+                }
+            }
             return null
         }
     }
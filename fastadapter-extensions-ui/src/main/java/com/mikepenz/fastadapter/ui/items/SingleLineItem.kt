@@ -101,8 +101,10 @@ class SingleLineItem : AbstractItem<SingleLineItem.ViewHolder>() {
 
     override fun unbindView(holder: ViewHolder) {
         holder.name.text = null
+        ImageHolder.cancel(holder.avatar)
         holder.avatar.setImageDrawable(null)
         holder.avatar.visibility = View.VISIBLE
+        ImageHolder.cancel(holder.icon)
         holder.icon.setImageDrawable(null)
         holder.icon.visibility = View.VISIBLE
     }
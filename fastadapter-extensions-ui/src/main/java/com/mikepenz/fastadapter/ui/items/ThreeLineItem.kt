@@ -106,8 +106,10 @@ class ThreeLineItem : AbstractItem<ThreeLineItem.ViewHolder>() {
     override fun unbindView(holder: ViewHolder) {
         holder.name.text = null
         holder.description.text = null
+        ImageHolder.cancel(holder.avatar)
         holder.avatar.setImageDrawable(null)
         holder.avatar.visibility = View.VISIBLE
+        ImageHolder.cancel(holder.icon)
         holder.icon.setImageDrawable(null)
         holder.icon.visibility = View.VISIBLE
     }
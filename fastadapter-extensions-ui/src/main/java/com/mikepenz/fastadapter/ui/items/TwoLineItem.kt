@@ -111,8 +111,10 @@ class TwoLineItem : AbstractItem<TwoLineItem.ViewHolder>() {
     override fun unbindView(holder: ViewHolder) {
         holder.name.text = null
         holder.description.text = null
+        ImageHolder.cancel(holder.avatar)
         holder.avatar.setImageDrawable(null)
         holder.avatar.visibility = View.VISIBLE
+        ImageHolder.cancel(holder.icon)
         holder.icon.setImageDrawable(null)
         holder.icon.visibility = View.VISIBLE
     }
@@ -4,6 +4,7 @@ import android.content.Context
 import android.content.res.ColorStateList
 import android.graphics.Bitmap
 import android.graphics.PorterDuff
+import android.graphics.drawable.BitmapDrawable
 import android.graphics.drawable.Drawable
 import android.net.Uri
 import android.view.View
@@ -53,12 +54,14 @@ open class ImageHolder {
     }
 
     /**
-     * sets an existing image to the imageView
+     * sets an existing image to the imageView, an uri image is loaded asynchronously via the [imageLoader]
      */
     @JvmOverloads
     open fun applyTo(imageView: ImageView, tag: String? = null): Boolean {
+        //a previous uri image of a recycled view must not replace this image
+        imageLoader.cancel(imageView)
         when {
-            uri != null -> imageView.setImageURI(uri)
+            uri != null -> imageLoader.load(uri!!, imageView)
             icon != null -> imageView.setImageDrawable(icon)
             bitmap != null -> imageView.setImageBitmap(bitmap)
             iconRes != -1 -> imageView.setImageResource(iconRes)
@@ -71,17 +74,18 @@ open class ImageHolder {
     }
 
     /**
-     * this only handles Drawables
+     * this only handles Drawables, an uri image is downsampled to the size of the screen, and served from the cache of the [imageLoader] if it was decoded before
      */
     open fun decideIcon(ctx: Context, iconColor: ColorStateList, tint: Boolean, paddingDp: Int = 1): Drawable? {
         var icon = this.icon
         when {
             iconRes != -1 -> icon = ContextCompat.getDrawable(ctx, iconRes)
-            uri != null -> try {
-                val inputStream = ctx.contentResolver.openInputStream(uri!!)
-                icon = Drawable.createFromStream(inputStream, uri!!.toString())
+            uri != null -> icon = imageLoader.decode(ctx, uri!!)?.let { BitmapDrawable(ctx.resources, it) } ?: try {
+                //not a bitmap, let the drawable resolve the format
+                ctx.contentResolver.openInputStream(uri!!)?.use { Drawable.createFromStream(it, uri!!.toString()) }
             } catch (e: FileNotFoundException) {
                 //no need to handle this
+                null
             }
         }
         //if we got an icon AND we have auto tinting enabled AND it is no IIcon, tint it ;)
@@ -94,6 +98,25 @@ open class ImageHolder {
     }
 
     companion object {
+        private var defaultImageLoader: UriImageLoader? = null
+
+        /** The loader used to decode uri images off the main thread, replace it to configure the executor or the cache size */
+        @JvmStatic
+        var imageLoader: UriImageLoader
+            get() = defaultImageLoader ?: UriImageLoader().also { defaultImageLoader = it }
+            set(value) {
+                defaultImageLoader = value
+            }
+
+        /**
+         * a small static helper to cancel a pending uri image load of the imageView, e.g. when the item is unbound
+         */
+        @JvmStatic
+        fun cancel(imageView: ImageView?) {
+            if (imageView != null) {
+                imageLoader.cancel(imageView)
+            }
+        }
 
         /**
          * a small static helper to set the image from the imageHolder nullSave to the imageView
@@ -0,0 +1,207 @@
+package com.mikepenz.fastadapter.ui.utils
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.net.Uri
+import android.os.Handler
+import android.os.Looper
+import android.util.Log
+import android.util.LruCache
+import android.widget.ImageView
+import com.mikepenz.fastadapter.ui.R
+import java.io.IOException
+import java.lang.ref.WeakReference
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * Loads the images of [ImageHolder]s defined by an [Uri] on a background thread instead of decoding them on the main thread while binding.
+ *
+ * The images are downsampled to the size of the target view (at most the size of the screen), and kept in a memory cache with one image per uri.
+ * A cached image is reused for every target it is big enough for, and only replaced by a bigger one. So a view which is not measured yet
+ * (e.g. on its first bind) does not cause a second decode and cache entry once it is measured.
+ * Images bigger than a quarter of the cache are not cached, so a single image can not evict the whole cache.
+ * A pending load is cancelled if a new image is applied to the same view, or via [cancel] (e.g. from `unbindView`).
+ *
+ * @param executor  the executor to decode the images on, by default a pool of daemon threads
+ * @param cacheSize the maximum size of the memory cache in bytes
+ */
+open class UriImageLoader @JvmOverloads constructor(
+        private val executor: Executor = defaultExecutor(),
+        cacheSize: Int = defaultCacheSize()
+) {
+    private val cache = object : LruCache<String, CachedImage>(cacheSize) {
+        override fun sizeOf(key: String, value: CachedImage): Int = value.bitmap.byteCount
+    }
+
+    private val mainHandler by lazy { Handler(Looper.getMainLooper()) }
+
+    /**
+     * Sets the image of the given uri to the imageView. Served from the cache if available, otherwise decoded on the background thread.
+     * The imageView is cleared until the image is available.
+     *
+     * Must be called from the main thread.
+     */
+    open fun load(uri: Uri, imageView: ImageView) {
+        cancel(imageView)
+        val width = targetSize(imageView.width, imageView.layoutParams?.width, imageView.resources.displayMetrics.widthPixels)
+        val height = targetSize(imageView.height, imageView.layoutParams?.height, imageView.resources.displayMetrics.heightPixels)
+        val cached = cached(uri, width, height)
+        if (cached != null) {
+            imageView.setImageBitmap(cached)
+            return
+        }
+        imageView.setImageDrawable(null)
+        val request = Request(uri, width, height, imageView)
+        imageView.setTag(R.id.fastadapter_image_request, request)
+        executor.execute(request)
+    }
+
+    /**
+     * Cancels the pending load of the given imageView, if there is one.
+     *
+     * Must be called from the main thread.
+     */
+    open fun cancel(imageView: ImageView) {
+        val request = imageView.getTag(R.id.fastadapter_image_request) as? Request ?: return
+        request.cancelled = true
+        imageView.setTag(R.id.fastadapter_image_request, null)
+    }
+
+    /**
+     * Decodes the image of the given uri downsampled to the size of the screen, served from the cache if available.
+     * Decodes on the calling thread if it is not cached yet.
+     *
+     * @return the image, or null if it could not be decoded
+     */
+    open fun decode(ctx: Context, uri: Uri): Bitmap? {
+        val width = ctx.resources.displayMetrics.widthPixels
+        val height = ctx.resources.displayMetrics.heightPixels
+        return cached(uri, width, height) ?: decode(ctx, uri, width, height)?.also { put(uri, it, width, height) }
+    }
+
+    /** Drops all cached images */
+    fun clearCache() {
+        cache.evictAll()
+    }
+
+    /**
+     * Decodes the image of the given uri, downsampled by a power of two as long as it stays at least as big as the requested size.
+     * A requested size of 0 decodes the image in its original size.
+     *
+     * @return the image, or null if it could not be decoded
+     */
+    protected open fun decode(ctx: Context, uri: Uri, width: Int, height: Int): Bitmap? {
+        return try {
+            val options = BitmapFactory.Options()
+            if (width > 0 && height > 0) {
+                options.inJustDecodeBounds = true
+                ctx.contentResolver.openInputStream(uri)?.use { BitmapFactory.decodeStream(it, null, options) }
+                options.inSampleSize = sampleSize(options.outWidth, options.outHeight, width, height)
+                options.inJustDecodeBounds = false
+            }
+            ctx.contentResolver.openInputStream(uri)?.use { BitmapFactory.decodeStream(it, null, options) }
+        } catch (e: IOException) {
+            Log.w(TAG, "The image $uri can not be decoded", e)
+            null
+        } catch (e: SecurityException) {
+            Log.w(TAG, "The image $uri can not be accessed", e)
+            null
+        }
+    }
+
+    /** @return the cached image of the uri, if it is at least as big as the requested size (or not downsampled at all) */
+    private fun cached(uri: Uri, width: Int, height: Int): Bitmap? {
+        val cached = cache.get(uri.toString()) ?: return null
+        return if (cached.isOriginalSize || cached.bitmap.width >= width && cached.bitmap.height >= height) cached.bitmap else null
+    }
+
+    /** Caches the image decoded for the requested size, unless a bigger image of the uri is cached already, or the image is too big for the cache */
+    private fun put(uri: Uri, bitmap: Bitmap, width: Int, height: Int) {
+        if (bitmap.byteCount > cache.maxSize() / MAX_ENTRY_FRACTION) {
+            return
+        }
+        val key = uri.toString()
+        synchronized(cache) {
+            val cached = cache.get(key)
+            if (cached == null || cached.bitmap.byteCount <= bitmap.byteCount) {
+                // the image is not downsampled if it is smaller than the requested size
+                cache.put(key, CachedImage(bitmap, bitmap.width < width || bitmap.height < height))
+            }
+        }
+    }
+
+    private fun onLoaded(request: Request, bitmap: Bitmap?) {
+        val imageView = request.imageView.get() ?: return
+        if (request.cancelled || imageView.getTag(R.id.fastadapter_image_request) !== request) {
+            return
+        }
+        imageView.setTag(R.id.fastadapter_image_request, null)
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap)
+        } else {
+            //not a bitmap (e.g. a drawable resource), let the imageView resolve it as before
+            imageView.setImageURI(request.uri)
+        }
+    }
+
+    /**
+     * @param isOriginalSize true if the image was not downsampled, so it is the biggest image available for its uri
+     */
+    private class CachedImage(val bitmap: Bitmap, val isOriginalSize: Boolean)
+
+    private inner class Request(
+            val uri: Uri,
+            val width: Int,
+            val height: Int,
+            imageView: ImageView
+    ) : Runnable {
+        val imageView = WeakReference(imageView)
+        private val context: Context = imageView.context.applicationContext
+
+        @Volatile
+        var cancelled = false
+
+        override fun run() {
+            if (cancelled) {
+                return
+            }
+            val bitmap = cached(uri, width, height) ?: decode(context, uri, width, height)?.also { put(uri, it, width, height) }
+            mainHandler.post { onLoaded(this, bitmap) }
+        }
+    }
+
+    companion object {
+        private const val TAG = "UriImageLoader"
+        private const val DEFAULT_THREAD_COUNT = 2
+        // a single image may use at most this fraction of the cache
+        private const val MAX_ENTRY_FRACTION = 4
+
+        /** @return an eighth of the memory available to the app */
+        fun defaultCacheSize(): Int = (Runtime.getRuntime().maxMemory() / 8).coerceAtMost(Int.MAX_VALUE.toLong()).toInt()
+
+        /** @return a pool of daemon threads, so pending loads do not keep the process alive */
+        private fun defaultExecutor(): Executor = Executors.newFixedThreadPool(DEFAULT_THREAD_COUNT) {
+            Thread(it, TAG).apply { isDaemon = true }
+        }
+
+        /** @return the measured size of the view, otherwise its fixed layout size, otherwise the size of the screen. At most the size of the screen */
+        internal fun targetSize(measured: Int, layoutSize: Int?, screenSize: Int): Int {
+            return when {
+                measured > 0 -> measured
+                layoutSize != null && layoutSize > 0 -> layoutSize
+                else -> screenSize
+            }.coerceAtMost(screenSize)
+        }
+
+        /** @return the biggest power of two to downsample the image by, which keeps it at least as big as the requested size */
+        internal fun sampleSize(outWidth: Int, outHeight: Int, width: Int, height: Int): Int {
+            var sampleSize = 1
+            while (outWidth / (sampleSize * 2) >= width && outHeight / (sampleSize * 2) >= height) {
+                sampleSize *= 2
+            }
+            return sampleSize
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.mikepenz.fastadapter.ui.utils
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.drawable.BitmapDrawable
+import android.net.Uri
+import android.os.Build
+import android.os.Looper
+import android.view.ViewGroup
+import android.widget.ImageView
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.util.concurrent.Executor
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [Build.VERSION_CODES.P])
+class UriImageLoaderTest {
+    private val uri = Uri.parse("content://test/image")
+
+    @Test
+    @Throws(Exception::class)
+    fun loadReusesBiggerCachedImage() {
+        val loader = TestImageLoader()
+        val big = imageView(50, 50)
+        val small = imageView(20, 20)
+
+        load(loader, big)
+        load(loader, small)
+
+        assertThat(loader.decodes).containsExactly("50x50")
+        assertThat(bitmap(small)).isSameAs(bitmap(big))
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun loadReplacesSmallerCachedImage() {
+        val loader = TestImageLoader()
+
+        load(loader, imageView(20, 20))
+        load(loader, imageView(50, 50))
+        val small = imageView(20, 20)
+        load(loader, small)
+
+        // the smaller image is not big enough for the bigger view, and replaced by the bigger one
+        assertThat(loader.decodes).containsExactly("20x20", "50x50")
+        assertThat(bitmap(small)?.width).isEqualTo(50)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun loadReusesImageInOriginalSize() {
+        // the image is smaller than requested, so it is not downsampled
+        val loader = TestImageLoader(originalSize = 10)
+
+        load(loader, imageView(20, 20))
+        val big = imageView(50, 50)
+        load(loader, big)
+
+        assertThat(loader.decodes).containsExactly("20x20")
+        assertThat(bitmap(big)?.width).isEqualTo(10)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun loadSkipsImagesTooBigForCache() {
+        // a quarter of the cache fits a 40x40 image (6400 bytes), but not a 50x50 image (10000 bytes)
+        val loader = TestImageLoader(cacheSize = 30_000)
+
+        load(loader, imageView(50, 50))
+        load(loader, imageView(50, 50))
+        load(loader, imageView(40, 40))
+        load(loader, imageView(40, 40))
+
+        assertThat(loader.decodes).containsExactly("50x50", "50x50", "40x40")
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun loadIgnoresCancelledRequests() {
+        val pending = ArrayList<Runnable>()
+        val loader = TestImageLoader(executor = Executor { pending.add(it) })
+        val cancelled = imageView(50, 50)
+        val replaced = imageView(50, 50)
+
+        loader.load(uri, cancelled)
+        loader.cancel(cancelled)
+        loader.load(uri, replaced)
+        loader.load(Uri.parse("content://test/other"), replaced)
+        pending.forEach { it.run() }
+        shadowOf(Looper.getMainLooper()).idle()
+
+        // cancelled requests are not decoded, only the last image applied to a view is set
+        assertThat(cancelled.drawable).isNull()
+        assertThat(loader.decodes).containsExactly("50x50")
+        assertThat(bitmap(replaced)).isSameAs(loader.decoded["content://test/other"])
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun decodeUsesCache() {
+        // big enough for an image of the size of the screen
+        val loader = TestImageLoader(cacheSize = 100_000_000)
+        val ctx = RuntimeEnvironment.getApplication()
+        val metrics = ctx.resources.displayMetrics
+
+        val first = loader.decode(ctx, uri)
+        val second = loader.decode(ctx, uri)
+
+        assertThat(loader.decodes).containsExactly("${metrics.widthPixels}x${metrics.heightPixels}")
+        assertThat(second).isSameAs(first)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun sampleSize() {
+        assertThat(UriImageLoader.sampleSize(4000, 3000, 1000, 700)).isEqualTo(4)
+        assertThat(UriImageLoader.sampleSize(4000, 3000, 1000, 800)).isEqualTo(2)
+        assertThat(UriImageLoader.sampleSize(1000, 1000, 1000, 1000)).isEqualTo(1)
+        // the image is smaller than requested
+        assertThat(UriImageLoader.sampleSize(100, 100, 200, 200)).isEqualTo(1)
+        // both dimensions have to stay big enough
+        assertThat(UriImageLoader.sampleSize(4000, 100, 100, 100)).isEqualTo(1)
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun targetSize() {
+        assertThat(UriImageLoader.targetSize(120, 80, 1080)).isEqualTo(120)
+        assertThat(UriImageLoader.targetSize(0, 80, 1080)).isEqualTo(80)
+        assertThat(UriImageLoader.targetSize(0, ViewGroup.LayoutParams.MATCH_PARENT, 1080)).isEqualTo(1080)
+        assertThat(UriImageLoader.targetSize(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1080)).isEqualTo(1080)
+        assertThat(UriImageLoader.targetSize(0, null, 1080)).isEqualTo(1080)
+        // at most the size of the screen
+        assertThat(UriImageLoader.targetSize(2000, null, 1080)).isEqualTo(1080)
+        assertThat(UriImageLoader.targetSize(0, 5000, 1080)).isEqualTo(1080)
+    }
+
+    private fun load(loader: UriImageLoader, imageView: ImageView) {
+        loader.load(uri, imageView)
+        shadowOf(Looper.getMainLooper()).idle()
+    }
+
+    private fun imageView(width: Int, height: Int): ImageView {
+        return ImageView(RuntimeEnvironment.getApplication()).apply {
+            layoutParams = ViewGroup.LayoutParams(width, height)
+        }
+    }
+
+    private fun bitmap(imageView: ImageView): Bitmap? = (imageView.drawable as? BitmapDrawable)?.bitmap
+
+    /**
+     * Decodes an empty image of the requested size, or of the given original size if that is smaller
+     */
+    private class TestImageLoader(
+            executor: Executor = Executor { it.run() },
+            cacheSize: Int = 1_000_000,
+            private val originalSize: Int = Int.MAX_VALUE
+    ) : UriImageLoader(executor, cacheSize) {
+        val decodes = ArrayList<String>()
+        val decoded = HashMap<String, Bitmap>()
+
+        override fun decode(ctx: Context, uri: Uri, width: Int, height: Int): Bitmap? {
+            decodes.add("${width}x$height")
+            return Bitmap.createBitmap(minOf(width, originalSize), minOf(height, originalSize), Bitmap.Config.ARGB_8888)
+                    .also { decoded[uri.toString()] = it }
+        }
+    }
+}
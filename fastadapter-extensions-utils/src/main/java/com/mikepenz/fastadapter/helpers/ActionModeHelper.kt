@@ -107,7 +107,7 @@ class ActionModeHelper<Item : GenericItem> {
      */
     fun onClick(act: AppCompatActivity?, item: IItem<*>): Boolean? {
         //if we are current in CAB mode, and we remove the last selection, we want to finish the actionMode
-        if (actionMode != null && selectExtension.selectedItems.size == 1 && item.isSelected) {
+        if (actionMode != null && selectExtension.selectedCount == 1 && item.isSelected) {
             actionMode?.finish()
             selectExtension.deselect()
             return true
@@ -116,7 +116,7 @@ class ActionModeHelper<Item : GenericItem> {
         if (actionMode != null) {
             // calculate the selection count for the action mode
             // because current selection is not reflecting the future state yet!
-            var selected = selectExtension.selectedItems.size
+            var selected = selectExtension.selectedCount
             if (item.isSelected)
                 selected--
             else if (item.isSelectable)
@@ -156,7 +156,7 @@ class ActionModeHelper<Item : GenericItem> {
      * @return the initialized ActionMode or null if no ActionMode is active after calling this function
      */
     fun checkActionMode(act: AppCompatActivity?): ActionMode? {
-        val selected = selectExtension.selectedItems.size
+        val selected = selectExtension.selectedCount
         return checkActionMode(act, selected)
     }
 
@@ -18,6 +18,19 @@ class HeaderHelper<Item, HeaderItem : Item> {
     /** The comparator to use before adding the headers */
     var comparator: Comparator<Item>? = null
 
+    // the items including the headers, as last applied to the modelAdapter
+    private val sectionedItems = ArrayList<Item>()
+    // the positions of the headers within the sectionedItems, ascending
+    private val headerPositions = ArrayList<Int>()
+
+    /** The positions of the headers within the list, ascending. Describes the list of the last [apply], [add] or [remove] */
+    val sectionPositions: List<Int>
+        get() = Collections.unmodifiableList(headerPositions)
+
+    // the amount of items without the headers
+    private val itemCount: Int
+        get() = sectionedItems.size - headerPositions.size
+
     constructor(groupingFunction: GroupingFunction<Item, HeaderItem>) {
         this.groupingFunction = groupingFunction
     }
@@ -37,35 +50,241 @@ class HeaderHelper<Item, HeaderItem : Item> {
      */
     fun apply(items: MutableList<Item>) {
         //If the list is empty avoid sorting and adding headers.
-        var size = items.size
-        if (size > 0) {
+        if (items.size > 0) {
             //sort beforehand
             if (comparator != null) {
                 Collections.sort(items, comparator)
             }
 
-            //we have to get the list size each time, as we will add the headers to it
-            var i = -1
-            while (i < size) {
-                val headerItem: HeaderItem? = when (i) {
-                    -1 -> groupingFunction.group(null, items[i + 1], i)
-                    size - 1 -> groupingFunction.group(items[i], null, i)
-                    else -> groupingFunction.group(items[i], items[i + 1], i)
-                }
-
-                if (headerItem != null) {
-                    items.add(i + 1, headerItem)
-                    i++
-                    size++
-                }
-                i++
-            }
+            //build the list with the headers in one pass, and take it over
+            build(items)
+            items.clear()
+            items.addAll(sectionedItems)
+        } else {
+            sectionedItems.clear()
+            headerPositions.clear()
         }
 
         // Set the sorted list to the modelAdapter if provided
         modelAdapter?.set(items)
     }
 
+    /**
+     * Adds an item to the list of the last [apply], at its sorted position (or at the end if no [comparator] is set).
+     * Only the headers around the new item are updated, and the modelAdapter is notified about the changed range only.
+     *
+     * @param item the item to add
+     */
+    fun add(item: Item) {
+        val count = itemCount
+        val index = comparator?.let { upperBound(item, it) } ?: count
+        val previousPosition = if (index > 0) positionOf(index - 1) else -1
+        val nextPosition = if (index < count) positionOf(index) else sectionedItems.size
+        val previousItem = if (previousPosition >= 0) sectionedItems[previousPosition] else null
+        val nextItem = if (index < count) sectionedItems[nextPosition] else null
+
+        val newItems = ArrayList<Item>(3)
+        val newHeaderOffsets = ArrayList<Int>(2)
+        val headerBefore: HeaderItem? = groupingFunction.group(previousItem, item, previousPosition)
+        if (headerBefore != null) {
+            newHeaderOffsets.add(newItems.size)
+            newItems.add(headerBefore)
+        }
+        newItems.add(item)
+        val headerAfter: HeaderItem? = groupingFunction.group(item, nextItem, previousPosition + newItems.size)
+        if (headerAfter != null) {
+            newHeaderOffsets.add(newItems.size)
+            newItems.add(headerAfter)
+        }
+
+        //the items between the previous and the next item are the headers of the previous section boundary
+        replace(previousPosition + 1, nextPosition, newItems, newHeaderOffsets)
+    }
+
+    /**
+     * Removes an item from the list of the last [apply].
+     * Only the headers around the item are updated, and the modelAdapter is notified about the changed range only.
+     *
+     * @param item the item to remove
+     * @return true if the item was found and removed
+     */
+    fun remove(item: Item): Boolean {
+        val index = indexOf(item)
+        if (index < 0) {
+            return false
+        }
+        val count = itemCount
+        val previousPosition = if (index > 0) positionOf(index - 1) else -1
+        val nextPosition = if (index + 1 < count) positionOf(index + 1) else sectionedItems.size
+        val previousItem = if (previousPosition >= 0) sectionedItems[previousPosition] else null
+        val nextItem = if (index + 1 < count) sectionedItems[nextPosition] else null
+
+        val newItems = ArrayList<Item>(1)
+        if (previousItem != null || nextItem != null) {
+            val header: HeaderItem? = groupingFunction.group(previousItem, nextItem, previousPosition)
+            if (header != null) {
+                newItems.add(header)
+            }
+        }
+
+        //the item and the headers around it are replaced by the header of the new section boundary
+        replace(previousPosition + 1, nextPosition, newItems, if (newItems.isEmpty()) emptyList() else listOf(0))
+        return true
+    }
+
+    /**
+     * @param position the position within the list
+     * @return the index of the section (within [sectionPositions]) the position belongs to, or -1 if it is before the first header
+     */
+    fun getSectionForPosition(position: Int): Int {
+        var low = 0
+        var high = headerPositions.size - 1
+        var section = -1
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            if (headerPositions[mid] <= position) {
+                section = mid
+                low = mid + 1
+            } else {
+                high = mid - 1
+            }
+        }
+        return section
+    }
+
+    /** Builds the [sectionedItems] and the [headerPositions] for the given (sorted) items */
+    private fun build(items: List<Item>) {
+        sectionedItems.clear()
+        sectionedItems.ensureCapacity(items.size)
+        headerPositions.clear()
+
+        addHeader(groupingFunction.group(null, items[0], -1))
+        for (i in items.indices) {
+            sectionedItems.add(items[i])
+            addHeader(groupingFunction.group(items[i], items.getOrNull(i + 1), sectionedItems.size - 1))
+        }
+    }
+
+    private fun addHeader(headerItem: HeaderItem?) {
+        if (headerItem != null) {
+            headerPositions.add(sectionedItems.size)
+            sectionedItems.add(headerItem)
+        }
+    }
+
+    /**
+     * Replaces the entries from start (inclusive) to end (exclusive) of the list, and notifies the modelAdapter about the changed range
+     *
+     * @param headerOffsets the offsets of the headers within the new items
+     */
+    private fun replace(start: Int, end: Int, newItems: List<Item>, headerOffsets: List<Int>) {
+        sectionedItems.subList(start, end).clear()
+        sectionedItems.addAll(start, newItems)
+
+        //drop the headers of the replaced range, and shift the ones after it
+        val delta = newItems.size - (end - start)
+        val headers = ArrayList<Int>(headerPositions.size + headerOffsets.size)
+        var i = 0
+        while (i < headerPositions.size && headerPositions[i] < start) {
+            headers.add(headerPositions[i++])
+        }
+        headerOffsets.forEach { headers.add(start + it) }
+        while (i < headerPositions.size) {
+            if (headerPositions[i] >= end) {
+                headers.add(headerPositions[i] + delta)
+            }
+            i++
+        }
+        headerPositions.clear()
+        headerPositions.addAll(headers)
+
+        modelAdapter?.let { adapter ->
+            val preItemCount = adapter.fastAdapter?.getPreItemCountByOrder(adapter.order) ?: 0
+            if (end > start) {
+                adapter.removeRange(preItemCount + start, end - start)
+            }
+            if (newItems.isNotEmpty()) {
+                adapter.add(preItemCount + start, newItems)
+            }
+        }
+    }
+
+    /**
+     * @return the position within the list of the item with the given index (not counting the headers)
+     *
+     * The header at headerPositions[i] is preceded by headerPositions[i] - i items, which is ascending as well,
+     * so the amount of headers before the item is found with a binary search in O(log H).
+     */
+    private fun positionOf(index: Int): Int {
+        var low = 0
+        var high = headerPositions.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (headerPositions[mid] - mid <= index) {
+                low = mid + 1
+            } else {
+                high = mid
+            }
+        }
+        return index + low
+    }
+
+    /** @return the index (not counting the headers) after the last item which is sorted before or equal to the given item */
+    private fun upperBound(item: Item, comparator: Comparator<Item>): Int {
+        var low = 0
+        var high = itemCount
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (comparator.compare(sectionedItems[positionOf(mid)], item) <= 0) {
+                low = mid + 1
+            } else {
+                high = mid
+            }
+        }
+        return low
+    }
+
+    /** @return the index (not counting the headers) of the given item, or -1 if it is not part of the list */
+    private fun indexOf(item: Item): Int {
+        val comparator = comparator
+        if (comparator != null) {
+            //only the items sorted equal to the given item have to be checked
+            var low = 0
+            var high = itemCount
+            while (low < high) {
+                val mid = (low + high) ushr 1
+                if (comparator.compare(sectionedItems[positionOf(mid)], item) < 0) {
+                    low = mid + 1
+                } else {
+                    high = mid
+                }
+            }
+            var index = low
+            while (index < itemCount) {
+                val candidate = sectionedItems[positionOf(index)]
+                if (candidate == item) {
+                    return index
+                } else if (comparator.compare(candidate, item) != 0) {
+                    break
+                }
+                index++
+            }
+        }
+        var index = 0
+        var header = 0
+        for (position in sectionedItems.indices) {
+            if (header < headerPositions.size && headerPositions[header] == position) {
+                header++
+                continue
+            }
+            if (sectionedItems[position] == item) {
+                return index
+            }
+            index++
+        }
+        return -1
+    }
+
     interface GroupingFunction<Item, HeaderItem> {
         /**
          * @param currentItem     the current item we check
@@ -3,7 +3,6 @@ package com.mikepenz.fastadapter.helpers
 import android.os.Bundle
 import com.mikepenz.fastadapter.GenericItem
 import com.mikepenz.fastadapter.IExpandable
-import com.mikepenz.fastadapter.IItem
 import com.mikepenz.fastadapter.adapters.FastItemAdapter
 import com.mikepenz.fastadapter.select.SelectExtension
 import com.mikepenz.fastadapter.utils.SubItemUtil
@@ -117,23 +116,15 @@ open class RangeSelectorHelper<Item : GenericItem>(private val fastAdapter: Fast
             to = temp
         }
 
-        var item: IItem<*>
-        for (i in from..to) {
-            item = fastAdapter.getAdapterItem(i)
-            if (item.isSelectable) {
-                val selectExtension: SelectExtension<Item>? = fastAdapter.getExtension(SelectExtension::class.java)
-                if (selectExtension != null) {
-                    if (select) {
-                        selectExtension.select(i)
-                    } else {
-                        selectExtension.deselect(i)
-                    }
-                }
-            }
-            if (supportSubItems && !skipHeaders) {
+        val selectExtension: SelectExtension<Item>? = fastAdapter.getExtension(SelectExtension::class.java)
+        selectExtension?.selectRange(from, to, select, payload)
+
+        if (supportSubItems && !skipHeaders) {
+            for (i in from..to) {
                 // if a group is collapsed, select all sub items
+                val item = fastAdapter.getAdapterItem(i)
                 if (item is IExpandable<*> && !(item as IExpandable<*>).isExpanded) {
-                    SubItemUtil.selectAllSubItems(fastAdapter, fastAdapter.getAdapterItem(i), select, true, payload)
+                    SubItemUtil.selectAllSubItems(fastAdapter, item, select, true, payload)
                 }
             }
         }
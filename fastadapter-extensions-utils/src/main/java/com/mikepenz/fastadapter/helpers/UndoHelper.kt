@@ -5,10 +5,10 @@ import com.google.android.material.snackbar.BaseTransientBottomBar
 import com.google.android.material.snackbar.Snackbar
 import com.mikepenz.fastadapter.FastAdapter
 import com.mikepenz.fastadapter.GenericItem
+import com.mikepenz.fastadapter.IAdapter
 import com.mikepenz.fastadapter.IItemAdapter
 import com.mikepenz.fastadapter.select.SelectExtension
 import java.util.*
-import java.util.Arrays.asList
 
 /**
  * Created by mikepenz on 04.01.16.
@@ -112,10 +112,11 @@ class UndoHelper<Item : GenericItem>(
 
         val history = History()
         history.action = ACTION_REMOVE
-        for (position in positions) {
-            history.items.add(adapter.getRelativeInfo(position))
+        for (position in positions.sorted()) {
+            val relativeInfo = adapter.getRelativeInfo(position)
+            val item = relativeInfo.item ?: continue
+            history.add(relativeInfo.adapter, item, position)
         }
-        history.items.sortWith { lhs, rhs -> Integer.valueOf(lhs.position).compareTo(rhs.position) }
 
         this.history = history
         doChange() // Do not execute when Snackbar shows up, instead change immediately
@@ -132,11 +133,19 @@ class UndoHelper<Item : GenericItem>(
     private fun notifyCommit() {
         history?.let { mHistory ->
             if (mHistory.action == ACTION_REMOVE) {
-                val positions = TreeSet(Comparator<Int> { lhs, rhs -> lhs.compareTo(rhs) })
-                for (relativeInfo in mHistory.items) {
-                    positions.add(relativeInfo.position)
+                val positions = TreeSet<Int>()
+                val items = ArrayList<FastAdapter.RelativeInfo<Item>>(mHistory.size)
+                for (range in mHistory.ranges) {
+                    range.items.forEachIndexed { i, item ->
+                        positions.add(range.position + i)
+                        items.add(FastAdapter.RelativeInfo<Item>().also {
+                            it.adapter = range.adapter
+                            it.item = item
+                            it.position = range.position + i
+                        })
+                    }
                 }
-                undoListener.commitRemove(positions, mHistory.items)
+                undoListener.commitRemove(positions, items)
                 this.history = null
             }
         }
@@ -145,10 +154,11 @@ class UndoHelper<Item : GenericItem>(
     private fun doChange() {
         history?.let { mHistory ->
             if (mHistory.action == ACTION_REMOVE) {
-                for (i in mHistory.items.indices.reversed()) {
-                    val relativeInfo = mHistory.items[i]
-                    if (relativeInfo.adapter is IItemAdapter<*, *>) {
-                        (relativeInfo.adapter as IItemAdapter<*, *>).remove(relativeInfo.position)
+                adapter.batch {
+                    // remove the ranges from the back, so the positions of the ranges before stay valid
+                    for (i in mHistory.ranges.indices.reversed()) {
+                        val range = mHistory.ranges[i]
+                        (range.adapter as? IItemAdapter<*, *>)?.removeRange(range.position, range.items.size)
                     }
                 }
             }
@@ -158,22 +168,26 @@ class UndoHelper<Item : GenericItem>(
     private fun undoChange() {
         history?.let { mHistory ->
             if (mHistory.action == ACTION_REMOVE) {
-                var i = 0
-                val size = mHistory.items.size
-                while (i < size) {
-                    val relativeInfo = mHistory.items[i]
-                    if (relativeInfo.adapter is IItemAdapter<*, *>) {
-                        val adapter = relativeInfo.adapter as IItemAdapter<*, Item>?
-
-                        relativeInfo.item?.let {
-                            adapter?.addInternal(relativeInfo.position, asList(it))
-                            if (relativeInfo.item?.isSelected == true) {
-                                val selectExtension = this.adapter.getExtension<SelectExtension<Item>>(SelectExtension::class.java)
-                                selectExtension?.select(relativeInfo.position)
+                adapter.batch {
+                    // re-add the ranges from the front, so each range ends up at its original position
+                    for (range in mHistory.ranges) {
+                        @Suppress("UNCHECKED_CAST")
+                        (range.adapter as? IItemAdapter<*, Item>)?.addInternal(range.position, range.items)
+                    }
+                }
+
+                // the items kept their selected state, the re-added views are bound as selected already.
+                // only restore the selection indices and inform the listener, without notifying each position again
+                val selectExtension = this.adapter.getExtension<SelectExtension<Item>>(SelectExtension::class.java)
+                if (selectExtension != null) {
+                    for (range in mHistory.ranges) {
+                        if (range.adapter !is IItemAdapter<*, *>) continue
+                        for (item in range.items) {
+                            if (item.isSelected) {
+                                selectExtension.select(item, false)
                             }
                         }
                     }
-                    i++
                 }
             }
         }
@@ -186,9 +200,30 @@ class UndoHelper<Item : GenericItem>(
 
     private inner class History {
         var action: Int = 0
-        var items = ArrayList<FastAdapter.RelativeInfo<Item>>()
+        // the removed items, grouped into ranges of contiguous positions within the same adapter, sorted by position
+        val ranges = ArrayList<Range>()
+        var size = 0
+            private set
+
+        /** Adds an item to the history, positions have to be added in ascending order */
+        fun add(adapter: IAdapter<Item>?, item: Item, position: Int) {
+            val last = ranges.lastOrNull()
+            if (last != null && last.adapter === adapter && last.position + last.items.size == position) {
+                last.items.add(item)
+            } else {
+                ranges.add(Range(adapter, position, arrayListOf(item)))
+            }
+            size++
+        }
     }
 
+    /**
+     * A range of removed items
+     *
+     * @param position the global position of the first item of the range
+     */
+    private inner class Range(val adapter: IAdapter<Item>?, val position: Int, val items: ArrayList<Item>)
+
     companion object {
         private const val ACTION_REMOVE = 2
     }
@@ -30,23 +30,17 @@ object DragDropUtil {
 
     /**
      * This functions handles the default drag and drop move event
-     * It takes care to move all items one by one within the passed in positions
+     * It moves the item with a single move, the items within the passed in positions shift by one
      *
      * @param itemAdapter the adapter
      * @param oldPosition the start position of the move
      * @param newPosition the end position of the move
      */
     @JvmStatic fun onMove(itemAdapter: IItemAdapter<*, *>, oldPosition: Int, newPosition: Int) {
-        // necessary, because the positions passed to this function may be jumping in case of
-        // that the recycler view is scrolled while holding an item outside of the recycler view
-        if (oldPosition < newPosition) {
-            for (i in oldPosition + 1..newPosition) {
-                itemAdapter.move(i, i - 1)
-            }
-        } else {
-            for (i in oldPosition - 1 downTo newPosition) {
-                itemAdapter.move(i, i + 1)
-            }
+        // the positions passed to this function may be jumping in case of that the recycler view is scrolled while holding an item outside of the recycler view.
+        // a single move results in the same order as moving all items in between one by one
+        if (oldPosition != newPosition) {
+            itemAdapter.move(oldPosition, newPosition)
         }
     }
 }
@@ -0,0 +1,131 @@
+package com.mikepenz.fastadapter.helpers;
+
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mikepenz.fastadapter.FastAdapter;
+import com.mikepenz.fastadapter.adapters.ItemAdapter;
+import com.mikepenz.fastadapter.items.AbstractItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class HeaderHelperTest {
+    private ItemAdapter<NameItem> itemAdapter;
+    private HeaderHelper<NameItem, NameItem> headerHelper;
+
+    @Before
+    public void setUp() throws Exception {
+        itemAdapter = new ItemAdapter<>();
+        FastAdapter.with(itemAdapter);
+        //adds a header with the first letter before each new letter
+        headerHelper = new HeaderHelper<>(itemAdapter, (currentItem, nextItem, currentPosition) -> {
+            if (nextItem == null || currentItem != null && currentItem.name.charAt(0) == nextItem.name.charAt(0)) {
+                return null;
+            }
+            return new NameItem("#" + nextItem.name.charAt(0));
+        });
+        headerHelper.setComparator((first, second) -> first.name.compareTo(second.name));
+        headerHelper.apply(items("c1", "a2", "b1", "a1"));
+    }
+
+    @Test
+    public void apply() throws Exception {
+        assertThat(names()).containsExactly("#a", "a1", "a2", "#b", "b1", "#c", "c1");
+        assertThat(headerHelper.getSectionPositions()).containsExactly(0, 3, 5);
+    }
+
+    @Test
+    public void add() throws Exception {
+        headerHelper.add(new NameItem("b2"));
+
+        assertThat(names()).containsExactly("#a", "a1", "a2", "#b", "b1", "b2", "#c", "c1");
+        assertThat(headerHelper.getSectionPositions()).containsExactly(0, 3, 6);
+
+        // a new first item, and a new section at the end
+        headerHelper.add(new NameItem("a0"));
+        headerHelper.add(new NameItem("d1"));
+
+        assertThat(names()).containsExactly("#a", "a0", "a1", "a2", "#b", "b1", "b2", "#c", "c1", "#d", "d1");
+        assertThat(headerHelper.getSectionPositions()).containsExactly(0, 4, 7, 9);
+        assertThat(headerHelper.getSectionForPosition(8)).isEqualTo(2);
+    }
+
+    @Test
+    public void remove() throws Exception {
+        headerHelper.add(new NameItem("b2"));
+
+        assertThat(headerHelper.remove(new NameItem("b1"))).isTrue();
+
+        assertThat(names()).containsExactly("#a", "a1", "a2", "#b", "b2", "#c", "c1");
+        assertThat(headerHelper.getSectionPositions()).containsExactly(0, 3, 5);
+
+        // removing the last item of a section removes its header
+        assertThat(headerHelper.remove(new NameItem("b2"))).isTrue();
+
+        assertThat(names()).containsExactly("#a", "a1", "a2", "#c", "c1");
+        assertThat(headerHelper.getSectionPositions()).containsExactly(0, 3);
+
+        assertThat(headerHelper.remove(new NameItem("b3"))).isFalse();
+        assertThat(headerHelper.remove(new NameItem("c1"))).isTrue();
+        assertThat(headerHelper.remove(new NameItem("a1"))).isTrue();
+
+        assertThat(names()).containsExactly("#a", "a2");
+        assertThat(headerHelper.getSectionPositions()).containsExactly(0);
+    }
+
+    private List<NameItem> items(String... names) {
+        List<NameItem> items = new ArrayList<>();
+        for (String name : names) {
+            items.add(new NameItem(name));
+        }
+        return items;
+    }
+
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (NameItem item : itemAdapter.getAdapterItems()) {
+            names.add(item.name);
+        }
+        return names;
+    }
+
+    static class NameItem extends AbstractItem<NameItem.ViewHolder> {
+        final String name;
+
+        NameItem(String name) {
+            this.name = name;
+            setIdentifier(name.hashCode());
+        }
+
+        @Override
+        public int getLayoutRes() {
+            return -1;
+        }
+
+        @Override
+        public int getType() {
+            return -1;
+        }
+
+        @Override
+        public ViewHolder getViewHolder(View v) {
+            return new ViewHolder(v);
+        }
+
+        static class ViewHolder extends RecyclerView.ViewHolder {
+            ViewHolder(View view) {
+                super(view);
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.mikepenz.fastadapter.helpers;
+
+import android.os.Looper;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.snackbar.Snackbar;
+import com.mikepenz.fastadapter.FastAdapter;
+import com.mikepenz.fastadapter.adapters.ItemAdapter;
+import com.mikepenz.fastadapter.items.AbstractItem;
+import com.mikepenz.fastadapter.select.SelectExtension;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class UndoHelperTest {
+    private ItemAdapter<NameItem> headerAdapter;
+    private ItemAdapter<NameItem> itemAdapter;
+    private FastAdapter<NameItem> fastAdapter;
+    private SelectExtension<NameItem> selectExtension;
+    private UndoHelper<NameItem> undoHelper;
+    private View view;
+    private final List<String> notifications = new ArrayList<>();
+    private final List<Set<Integer>> committedPositions = new ArrayList<>();
+    private final List<FastAdapter.RelativeInfo<NameItem>> committedItems = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        headerAdapter = new ItemAdapter<>();
+        itemAdapter = new ItemAdapter<>();
+        fastAdapter = FastAdapter.with(Arrays.asList(headerAdapter, itemAdapter));
+        selectExtension = new SelectExtension<>(fastAdapter);
+        fastAdapter.addExtension(selectExtension);
+        selectExtension.setSelectable(true);
+        selectExtension.setMultiSelect(true);
+        headerAdapter.add(new NameItem("header"));
+        itemAdapter.add(items("a", "b", "c", "d", "e", "f"));
+        fastAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                notifications.add("inserted " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                notifications.add("removed " + positionStart + " " + itemCount);
+            }
+        });
+
+        undoHelper = new UndoHelper<>(fastAdapter, new UndoHelper.UndoListener<NameItem>() {
+            @Override
+            public void commitRemove(@NonNull Set<Integer> positions, @NonNull ArrayList<FastAdapter.RelativeInfo<NameItem>> removed) {
+                committedPositions.add(positions);
+                committedItems.addAll(removed);
+            }
+        });
+        view = new FrameLayout(new ContextThemeWrapper(RuntimeEnvironment.application, com.google.android.material.R.style.Theme_MaterialComponents_Light));
+    }
+
+    @Test
+    public void remove_GroupsContiguousPositions() throws Exception {
+        remove(6, 1, 4, 2, 5);
+
+        assertThat(names(itemAdapter)).containsExactly("c");
+        // one removal per range, from the back
+        assertThat(notifications).containsExactly("removed 4 3", "removed 1 2");
+    }
+
+    @Test
+    public void remove_CommitsAllRemovedItems() throws Exception {
+        remove(1, 2, 4, 5, 6);
+        // a new removal commits the previous one
+        remove(1);
+
+        assertThat(committedPositions).hasSize(1);
+        assertThat(committedPositions.get(0)).containsExactly(1, 2, 4, 5, 6);
+        List<String> removed = new ArrayList<>();
+        for (FastAdapter.RelativeInfo<NameItem> info : committedItems) {
+            assertThat(info.getAdapter()).isSameAs(itemAdapter);
+            removed.add(info.getPosition() + ":" + info.getItem().name);
+        }
+        assertThat(removed).containsExactly("1:a", "2:b", "4:d", "5:e", "6:f");
+    }
+
+    @Test
+    public void remove_SplitsRangesAtAdapterBoundaries() throws Exception {
+        remove(0, 1, 2);
+        remove(1);
+
+        assertThat(names(headerAdapter)).isEmpty();
+        assertThat(committedItems).hasSize(3);
+        assertThat(committedItems.get(0).getAdapter()).isSameAs(headerAdapter);
+        assertThat(committedItems.get(1).getAdapter()).isSameAs(itemAdapter);
+        assertThat(committedItems.get(2).getAdapter()).isSameAs(itemAdapter);
+    }
+
+    @Test
+    public void undo_RestoresPositions() throws Exception {
+        Snackbar snackbar = remove(1, 2, 4, 5, 6);
+        notifications.clear();
+
+        undo(snackbar);
+
+        assertThat(names(headerAdapter)).containsExactly("header");
+        assertThat(names(itemAdapter)).containsExactly("a", "b", "c", "d", "e", "f");
+        // one insertion per range, from the front
+        assertThat(notifications).containsExactly("inserted 1 2", "inserted 4 3");
+        // undone removals are not committed
+        assertThat(committedPositions).isEmpty();
+    }
+
+    @Test
+    public void undo_RestoresSelection() throws Exception {
+        selectExtension.select(new HashSet<>(Arrays.asList(2, 3, 5)));
+        Snackbar snackbar = remove(1, 2, 5, 6);
+
+        assertThat(selectExtension.getSelections()).containsExactly(1);
+        assertThat(names(selectExtension.getSelectedItems())).containsExactly("c");
+
+        undo(snackbar);
+
+        assertThat(selectExtension.getSelections()).containsOnly(2, 3, 5);
+        assertThat(names(selectExtension.getSelectedItems())).containsOnly("b", "c", "e");
+        assertThat(itemAdapter.getAdapterItem(1).isSelected()).isTrue();
+        assertThat(itemAdapter.getAdapterItem(4).isSelected()).isTrue();
+        assertThat(itemAdapter.getAdapterItem(0).isSelected()).isFalse();
+    }
+
+    private Snackbar remove(Integer... positions) {
+        Snackbar snackbar = undoHelper.remove(view, "removed", "undo", Snackbar.LENGTH_LONG, new HashSet<>(Arrays.asList(positions)));
+        shadowOf(Looper.getMainLooper()).idle();
+        return snackbar;
+    }
+
+    private static void undo(Snackbar snackbar) {
+        snackbar.getView().findViewById(com.google.android.material.R.id.snackbar_action).performClick();
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private static List<String> names(ItemAdapter<NameItem> adapter) {
+        return names(adapter.getAdapterItems());
+    }
+
+    private static List<String> names(Iterable<NameItem> items) {
+        List<String> names = new ArrayList<>();
+        for (NameItem item : items) {
+            names.add(item.name);
+        }
+        return names;
+    }
+
+    private static List<NameItem> items(String... names) {
+        List<NameItem> items = new ArrayList<>();
+        for (String name : names) {
+            items.add(new NameItem(name));
+        }
+        return items;
+    }
+
+    static class NameItem extends AbstractItem<NameItem.ViewHolder> {
+        final String name;
+
+        NameItem(String name) {
+            this.name = name;
+            setIdentifier(name.hashCode());
+        }
+
+        @Override
+        public int getLayoutRes() {
+            return -1;
+        }
+
+        @Override
+        public int getType() {
+            return -1;
+        }
+
+        @Override
+        public ViewHolder getViewHolder(View v) {
+            return new ViewHolder(v);
+        }
+
+        static class ViewHolder extends RecyclerView.ViewHolder {
+            ViewHolder(View view) {
+                super(view);
+            }
+        }
+    }
+}
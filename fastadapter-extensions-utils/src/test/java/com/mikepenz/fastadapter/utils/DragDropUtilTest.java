@@ -0,0 +1,183 @@
+package com.mikepenz.fastadapter.utils;
+
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mikepenz.fastadapter.FastAdapter;
+import com.mikepenz.fastadapter.adapters.ItemAdapter;
+import com.mikepenz.fastadapter.items.AbstractItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class DragDropUtilTest {
+    private ItemAdapter<NameItem> headerAdapter;
+    private ItemAdapter<NameItem> itemAdapter;
+    private final List<String> notifications = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        headerAdapter = new ItemAdapter<>();
+        itemAdapter = new ItemAdapter<>();
+        FastAdapter<NameItem> fastAdapter = FastAdapter.with(Arrays.asList(headerAdapter, itemAdapter));
+        headerAdapter.add(new NameItem("header"));
+        itemAdapter.add(items("a", "b", "c", "d", "e"));
+        fastAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                notifications.add("changed");
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                notifications.add("changed " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                notifications.add("inserted " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                notifications.add("removed " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                notifications.add("moved " + fromPosition + " " + toPosition + " " + itemCount);
+            }
+        });
+    }
+
+    @Test
+    public void onMove_Down() throws Exception {
+        DragDropUtil.onMove(itemAdapter, 2, 5);
+
+        assertThat(names(itemAdapter)).containsExactly("a", "c", "d", "e", "b");
+        assertThat(notifications).containsExactly("moved 2 5 1");
+    }
+
+    @Test
+    public void onMove_Up() throws Exception {
+        DragDropUtil.onMove(itemAdapter, 4, 1);
+
+        assertThat(names(itemAdapter)).containsExactly("d", "a", "b", "c", "e");
+        assertThat(notifications).containsExactly("moved 4 1 1");
+    }
+
+    @Test
+    public void onMove_Adjacent() throws Exception {
+        DragDropUtil.onMove(itemAdapter, 1, 2);
+        DragDropUtil.onMove(itemAdapter, 3, 2);
+
+        assertThat(names(itemAdapter)).containsExactly("b", "c", "a", "d", "e");
+        assertThat(notifications).containsExactly("moved 1 2 1", "moved 3 2 1");
+    }
+
+    @Test
+    public void onMove_SamePosition() throws Exception {
+        DragDropUtil.onMove(itemAdapter, 3, 3);
+
+        assertThat(names(itemAdapter)).containsExactly("a", "b", "c", "d", "e");
+        assertThat(notifications).isEmpty();
+    }
+
+    @Test
+    public void onMove_MatchesStepwiseMoves() throws Exception {
+        // jumping positions, as they are reported when the recycler view scrolls while dragging
+        DragDropUtil.onMove(itemAdapter, 1, 4);
+        DragDropUtil.onMove(itemAdapter, 4, 5);
+        DragDropUtil.onMove(itemAdapter, 5, 2);
+
+        List<String> expected = new ArrayList<>(Arrays.asList("a", "b", "c", "d", "e"));
+        stepwiseMove(expected, 0, 3);
+        stepwiseMove(expected, 3, 4);
+        stepwiseMove(expected, 4, 1);
+        assertThat(names(itemAdapter)).isEqualTo(expected);
+        assertThat(headerAdapter.getAdapterItem(0).name).isEqualTo("header");
+    }
+
+    @Test
+    public void onMove_IdentifierIndexedItemList() throws Exception {
+        ItemAdapter<NameItem> indexedAdapter = new ItemAdapter<>(new IdentifierIndexedItemListImpl<>());
+        FastAdapter.with(indexedAdapter);
+        indexedAdapter.add(items("a", "b", "c", "d", "e"));
+
+        DragDropUtil.onMove(indexedAdapter, 0, 3);
+
+        assertThat(names(indexedAdapter)).containsExactly("b", "c", "d", "a", "e");
+        for (int i = 0; i < indexedAdapter.getAdapterItemCount(); i++) {
+            assertThat(indexedAdapter.getAdapterPosition(indexedAdapter.getAdapterItem(i).getIdentifier())).isEqualTo(i);
+        }
+    }
+
+    private static void stepwiseMove(List<String> list, int from, int to) {
+        // the previous implementation, moving the item one slot at a time
+        if (from < to) {
+            for (int i = from + 1; i <= to; i++) {
+                list.add(i, list.remove(i - 1));
+            }
+        } else {
+            for (int i = from - 1; i >= to; i--) {
+                list.add(i, list.remove(i + 1));
+            }
+        }
+    }
+
+    private static List<String> names(ItemAdapter<NameItem> adapter) {
+        List<String> names = new ArrayList<>();
+        for (NameItem item : adapter.getAdapterItems()) {
+            names.add(item.name);
+        }
+        return names;
+    }
+
+    private static List<NameItem> items(String... names) {
+        List<NameItem> items = new ArrayList<>();
+        for (String name : names) {
+            items.add(new NameItem(name));
+        }
+        return items;
+    }
+
+    static class NameItem extends AbstractItem<NameItem.ViewHolder> {
+        final String name;
+
+        NameItem(String name) {
+            this.name = name;
+            setIdentifier(name.hashCode());
+        }
+
+        @Override
+        public int getLayoutRes() {
+            return -1;
+        }
+
+        @Override
+        public int getType() {
+            return -1;
+        }
+
+        @Override
+        public ViewHolder getViewHolder(View v) {
+            return new ViewHolder(v);
+        }
+
+        static class ViewHolder extends RecyclerView.ViewHolder {
+            ViewHolder(View view) {
+                super(view);
+            }
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.mikepenz.fastadapter
 
 import android.os.Bundle
 import android.util.Log
-import android.util.SparseArray
 import android.view.MotionEvent
 import android.view.View
 import android.view.ViewGroup
@@ -12,11 +11,15 @@ import com.mikepenz.fastadapter.adapters.ItemAdapter.Companion.items
 import com.mikepenz.fastadapter.dsl.FastAdapterDsl
 import com.mikepenz.fastadapter.extensions.ExtensionsFactories
 import com.mikepenz.fastadapter.listeners.*
+import com.mikepenz.fastadapter.utils.AdapterOffsetTable
 import com.mikepenz.fastadapter.utils.AdapterPredicate
 import com.mikepenz.fastadapter.utils.DefaultItemVHFactoryCache
 import com.mikepenz.fastadapter.utils.Triple
+import com.mikepenz.fastadapter.utils.ViewEventHooks
+import com.mikepenz.fastadapter.utils.attachShared
 import com.mikepenz.fastadapter.utils.attachToView
 import java.util.*
+import kotlin.math.max
 import kotlin.math.min
 
 /**
@@ -53,9 +56,10 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
      */
     open var itemVHFactoryCache: IItemVHFactoryCache<IItemVHFactory<*>> = DefaultItemVHFactoryCache()
     // cache the sizes of the different adapters so we can access the items more performant
-    private val adapterSizes = SparseArray<IAdapter<Item>>()
+    private val adapterOffsets = AdapterOffsetTable()
     // the total size
-    private var globalSize = 0
+    private val globalSize: Int
+        get() = adapterOffsets.totalSize
 
     private var _eventHooks: MutableList<EventHook<out Item>>? = null
 
@@ -66,6 +70,11 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
     // the extensions we support
     private val extensionsCache = ArrayMap<Class<*>, IAdapterExtension<Item>>()
 
+    // the depth of nested batch calls, and the notifications buffered while batching
+    private var batchDepth = 0
+    private val batchOperations = ArrayList<BatchOperation>()
+    private var batchDataSetChanged = false
+
     //
     //-------------------------
     //-------------------------
@@ -78,6 +87,22 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
     // if set to `false` will not attach any listeners to the list. click events will have to be handled manually
     var attachDefaultListeners = true
 
+    /**
+     * If enabled, click, long click and touch events are dispatched via one shared listener, instead of a new listener per view and event hook.
+     * The hooks for a view are resolved via a table per view type, which is built when the first ViewHolder of the type is created.
+     * Event hooks have to bind to the same views for every ViewHolder of a type. Has to be set before the first ViewHolder is created.
+     */
+    var sharedEventHookDispatch = false
+
+    // the default listeners for the shared event hook dispatch
+    internal val defaultEventHooks: ViewEventHooks by lazy {
+        ViewEventHooks(
+                viewClickListener as ClickEventHook<GenericItem>,
+                viewLongClickListener as LongClickEventHook<GenericItem>,
+                viewTouchListener as TouchEventHook<GenericItem>
+        )
+    }
+
     private val logger = VerboseLogger(TAG)
 
     /** Enables the verbose log for the adapter */
@@ -98,6 +123,9 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
     var onCreateViewHolderListener: OnCreateViewHolderListener<Item> = OnCreateViewHolderListenerImpl()
     var onBindViewHolderListener: OnBindViewHolderListener = OnBindViewHolderListenerImpl<Item>()
 
+    /** Receives the create and bind timings and the recycle counts per view type. Nothing is measured if not set */
+    var metricsListener: ViewHolderMetricsListener? = null
+
     /**
      * @return the AdapterExtensions we provided
      */
@@ -344,7 +372,9 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
      * @return the ViewHolder with the bound data
      */
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): RecyclerView.ViewHolder {
-        logger.log("onCreateViewHolder: $viewType")
+        logger.log { "onCreateViewHolder: $viewType" }
+        val metricsListener = metricsListener
+        val start = if (metricsListener != null) System.nanoTime() else 0L
 
         val itemFactory = getTypeInstance(viewType)
         val holder = onCreateViewHolderListener.onPreCreateViewHolder(this, parent, viewType, itemFactory)
@@ -352,7 +382,10 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
         //set the adapter
         holder.itemView.setTag(R.id.fastadapter_item_adapter, this@FastAdapter)
 
-        if (attachDefaultListeners) {
+        if (attachDefaultListeners && sharedEventHookDispatch) {
+            //handle click, long click and touch behavior via the shared listener
+            holder.itemView.attachShared(holder, defaultEventHooks)
+        } else if (attachDefaultListeners) {
             //handle click behavior
             viewClickListener.attachToView(holder, holder.itemView)
 
@@ -363,7 +396,9 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
             viewTouchListener.attachToView(holder, holder.itemView)
         }
 
-        return onCreateViewHolderListener.onPostCreateViewHolder(this, holder, itemFactory)
+        val createdHolder = onCreateViewHolderListener.onPostCreateViewHolder(this, holder, itemFactory)
+        metricsListener?.onViewHolderCreated(viewType, System.nanoTime() - start)
+        return createdHolder
     }
 
     /**
@@ -382,7 +417,7 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
             //set the R.id.fastadapter_item_adapter tag to the adapter so we always have the proper bound adapter available
             holder.itemView.setTag(R.id.fastadapter_item_adapter, this)
             //now we bind the item to this viewHolder
-            onBindViewHolderListener.onBindViewHolder(holder, position, Collections.emptyList())
+            bindViewHolder(holder, position, Collections.emptyList())
         }
     }
 
@@ -394,20 +429,32 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
             //set the R.id.fastadapter_item_adapter tag to the adapter so we always have the proper bound adapter available
             holder.itemView.setTag(R.id.fastadapter_item_adapter, this)
             //now we bind the item to this viewHolder
-            onBindViewHolderListener.onBindViewHolder(holder, position, payloads)
+            bindViewHolder(holder, position, payloads)
         }
         super.onBindViewHolder(holder, position, payloads)
     }
 
+    private fun bindViewHolder(holder: RecyclerView.ViewHolder, position: Int, payloads: List<Any>) {
+        val metricsListener = metricsListener
+        if (metricsListener == null) {
+            onBindViewHolderListener.onBindViewHolder(holder, position, payloads)
+        } else {
+            val start = System.nanoTime()
+            onBindViewHolderListener.onBindViewHolder(holder, position, payloads)
+            metricsListener.onViewHolderBound(holder.itemViewType, System.nanoTime() - start)
+        }
+    }
+
     /**
      * Unbinds the data to the already existing ViewHolder and removes the listeners from the holder.itemView
      *
      * @param holder the viewHolder we unbind the data from
      */
     override fun onViewRecycled(holder: RecyclerView.ViewHolder) {
-        logger.log("onViewRecycled: " + holder.itemViewType)
+        logger.log { "onViewRecycled: " + holder.itemViewType }
         super.onViewRecycled(holder)
         onBindViewHolderListener.unBindViewHolder(holder, holder.adapterPosition)
+        metricsListener?.onViewHolderRecycled(holder.itemViewType)
     }
 
     /**
@@ -416,7 +463,7 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
      * @param holder the viewHolder for the view which got detached
      */
     override fun onViewDetachedFromWindow(holder: RecyclerView.ViewHolder) {
-        logger.log("onViewDetachedFromWindow: " + holder.itemViewType)
+        logger.log { "onViewDetachedFromWindow: " + holder.itemViewType }
         super.onViewDetachedFromWindow(holder)
         onBindViewHolderListener.onViewDetachedFromWindow(holder, holder.adapterPosition)
     }
@@ -427,7 +474,7 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
      * @param holder the viewHolder for the view which got detached
      */
     override fun onViewAttachedToWindow(holder: RecyclerView.ViewHolder) {
-        logger.log("onViewAttachedToWindow: " + holder.itemViewType)
+        logger.log { "onViewAttachedToWindow: " + holder.itemViewType }
         super.onViewAttachedToWindow(holder)
         onBindViewHolderListener.onViewAttachedToWindow(holder, holder.adapterPosition)
     }
@@ -440,7 +487,8 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
      * @return true if we want to recycle anyways (false - it get's destroyed)
      */
     override fun onFailedToRecycleView(holder: RecyclerView.ViewHolder): Boolean {
-        logger.log("onFailedToRecycleView: " + holder.itemViewType)
+        logger.log { "onFailedToRecycleView: " + holder.itemViewType }
+        metricsListener?.onViewHolderFailedToRecycle(holder.itemViewType)
         return onBindViewHolderListener.onFailedToRecycleView(holder, holder.adapterPosition) || super.onFailedToRecycleView(holder)
     }
 
@@ -503,8 +551,8 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
             return null
         }
         //now get the adapter which is responsible for the given position
-        val index = floorIndex(adapterSizes, position)
-        return adapterSizes.valueAt(index).getAdapterItem(position - adapterSizes.keyAt(index))
+        val order = adapterOffsets.orderOf(position)
+        return adapters[order].getAdapterItem(position - adapterOffsets.offsetOf(order))
     }
 
     /**
@@ -517,6 +565,11 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
         if (identifier == -1L) {
             return null
         }
+        // displayed items are resolved via their adapter, which might keep an identifier index
+        val position = getPosition(identifier)
+        if (position != RecyclerView.NO_POSITION) {
+            getItem(position)?.let { return it to position }
+        }
         val (_, second, third) = recursive(object : AdapterPredicate<Item> {
             override fun apply(
                     lastParentAdapter: IAdapter<Item>,
@@ -543,14 +596,12 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
         }
 
         val relativeInfo = RelativeInfo<Item>()
-        val index = floorIndex(adapterSizes, position)
-        if (index != -1) {
-            val peeked = adapterSizes.valueAt(index).peekAdapterItem(position - adapterSizes.keyAt(index))
-            if (peeked != null) {
-                relativeInfo.item = peeked
-                relativeInfo.adapter = adapterSizes.valueAt(index)
-                relativeInfo.position = position
-            }
+        val order = adapterOffsets.orderOf(position)
+        val peeked = adapters[order].peekAdapterItem(position - adapterOffsets.offsetOf(order))
+        if (peeked != null) {
+            relativeInfo.item = peeked
+            relativeInfo.adapter = adapters[order]
+            relativeInfo.position = position
         }
         return relativeInfo
     }
@@ -568,7 +619,7 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
         }
         logger.log("getAdapter")
         //now get the adapter which is responsible for the given position
-        return adapterSizes.valueAt(floorIndex(adapterSizes, position))
+        return adapters[adapterOffsets.orderOf(position)]
     }
 
     /**
@@ -617,15 +668,8 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
             return 0
         }
 
-        var size = 0
-
-        //count the number of items before the adapter with the given order
-        for (i in 0 until min(order, adapters.size)) {
-            size += adapters[i].adapterItemCount
-        }
-
         //get the count of items which are before this order
-        return size
+        return adapterOffsets.offsetOf(order)
     }
 
 
@@ -640,9 +684,9 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
         return if (globalSize == 0) {
             0
         } else {
-            adapterSizes.keyAt(floorIndex(adapterSizes, position))
+            //get the count of items which are before the adapter holding the position
+            adapterOffsets.offsetOf(adapterOffsets.orderOf(min(max(position, 0), globalSize - 1)))
         }
-        //get the count of items which are before this order
     }
 
     /**
@@ -665,22 +709,14 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
 
     /** We cache the sizes of our adapters so get accesses are faster */
     protected fun cacheSizes() {
-        adapterSizes.clear()
-        var size = 0
-
-        for (adapter in adapters) {
-            if (adapter.adapterItemCount > 0) {
-                adapterSizes.append(size, adapter)
-                size += adapter.adapterItemCount
-            }
-        }
+        adapterOffsets.rebuild(adapters)
+    }
 
-        //we also have to add this for the first adapter otherwise the floorIndex method will return the wrong value
-        if (size == 0 && adapters.size > 0) {
-            adapterSizes.append(0, adapters[0])
+    /** Updates the cached sizes for a structural change at the given position, recounts all adapters if the change can't be located */
+    private fun updateSizes(position: Int, delta: Int) {
+        if (!adapterOffsets.applyChange(adapters, position, delta)) {
+            cacheSizes()
         }
-
-        globalSize = size
     }
 
     //-------------------------
@@ -689,6 +725,98 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
     //-------------------------
     //-------------------------
 
+    /**
+     * Runs the given block as one transaction. Notifications done while the block runs are buffered, adjacent ranges are merged,
+     * and the resulting notifications are dispatched to the [RecyclerView] once the block finished.
+     *
+     * The sizes of the adapters are kept up to date while batching, so positions can be resolved as usual within the block.
+     * The extensions are notified immediately, the same as without a batch, so they see the items of the moment of the change.
+     * A [notifyAdapterDataSetChanged] within the block replaces all other notifications of the transaction.
+     * Batches can be nested, the notifications are dispatched when the outermost batch finishes.
+     *
+     * @param block the changes to apply
+     */
+    open fun batch(block: FastAdapter<Item>.() -> Unit) {
+        batchDepth++
+        try {
+            block()
+        } finally {
+            if (--batchDepth == 0) {
+                dispatchBatch()
+            }
+        }
+    }
+
+    /**
+     * Convenient function for [batch], for callers from Java
+     */
+    open fun batch(block: Runnable) {
+        val action: FastAdapter<Item>.() -> Unit = { block.run() }
+        batch(action)
+    }
+
+    /** true while a [batch] is running */
+    val isBatching: Boolean
+        get() = batchDepth > 0
+
+    private fun bufferOperation(type: Int, position: Int, count: Int, payload: Any? = null) {
+        if (batchDataSetChanged) {
+            return
+        }
+        val last = batchOperations.lastOrNull()
+        if (last != null && last.type == type) {
+            when (type) {
+                BatchOperation.INSERT -> if (position >= last.position && position <= last.position + last.count) {
+                    last.count += count
+                    return
+                }
+                BatchOperation.REMOVE -> if (position == last.position) {
+                    last.count += count
+                    return
+                } else if (position + count == last.position) {
+                    last.position = position
+                    last.count += count
+                    return
+                }
+                BatchOperation.CHANGE -> if (payload == last.payload && position <= last.position + last.count && position + count >= last.position) {
+                    val end = max(position + count, last.position + last.count)
+                    last.position = min(position, last.position)
+                    last.count = end - last.position
+                    return
+                }
+            }
+        }
+        batchOperations.add(BatchOperation(type, position, count, payload))
+    }
+
+    private fun dispatchBatch() {
+        if (batchDataSetChanged) {
+            batchDataSetChanged = false
+            batchOperations.clear()
+            notifyDataSetChanged()
+            return
+        }
+        // the extensions were notified already, only the RecyclerView is left
+        val operations = ArrayList(batchOperations)
+        batchOperations.clear()
+        for (operation in operations) {
+            val position = operation.position
+            val count = operation.count
+            when (operation.type) {
+                BatchOperation.INSERT -> notifyItemRangeInserted(position, count)
+                BatchOperation.REMOVE -> notifyItemRangeRemoved(position, count)
+                BatchOperation.MOVE -> notifyItemMoved(position, count)
+                BatchOperation.CHANGE -> {
+                    if (operation.payload == null) {
+                        notifyItemRangeChanged(position, count)
+                    } else {
+                        notifyItemRangeChanged(position, count, operation.payload)
+                    }
+                }
+            }
+        }
+    }
+
     /** Wraps notifyDataSetChanged */
     open fun notifyAdapterDataSetChanged() {
         // handle our extensions
@@ -696,6 +824,11 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
             ext.notifyAdapterDataSetChanged()
         }
         cacheSizes()
+        if (batchDepth > 0) {
+            batchOperations.clear()
+            batchDataSetChanged = true
+            return
+        }
         notifyDataSetChanged()
     }
 
@@ -719,7 +852,11 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
         for (ext in extensionsCache.values) {
             ext.notifyAdapterItemRangeInserted(position, itemCount)
         }
-        cacheSizes()
+        updateSizes(position, itemCount)
+        if (batchDepth > 0) {
+            bufferOperation(BatchOperation.INSERT, position, itemCount)
+            return
+        }
         notifyItemRangeInserted(position, itemCount)
     }
 
@@ -744,7 +881,11 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
             ext.notifyAdapterItemRangeRemoved(position, itemCount)
         }
 
-        cacheSizes()
+        updateSizes(position, -itemCount)
+        if (batchDepth > 0) {
+            bufferOperation(BatchOperation.REMOVE, position, itemCount)
+            return
+        }
         notifyItemRangeRemoved(position, itemCount)
     }
 
@@ -759,6 +900,10 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
         for (ext in extensionsCache.values) {
             ext.notifyAdapterItemMoved(fromPosition, toPosition)
         }
+        if (batchDepth > 0) {
+            bufferOperation(BatchOperation.MOVE, fromPosition, toPosition)
+            return
+        }
         notifyItemMoved(fromPosition, toPosition)
     }
 
@@ -786,6 +931,10 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
         for (ext in extensionsCache.values) {
             ext.notifyAdapterItemRangeChanged(position, itemCount, payload)
         }
+        if (batchDepth > 0) {
+            bufferOperation(BatchOperation.CHANGE, position, itemCount, payload)
+            return
+        }
         if (payload == null) {
             notifyItemRangeChanged(position, itemCount)
         } else {
@@ -837,6 +986,18 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
         return Triple(false, null, null)
     }
 
+    /**
+     * A notification buffered within a [batch]. For moves [position] is the from position and [count] the to position
+     */
+    private class BatchOperation(val type: Int, var position: Int, var count: Int, val payload: Any?) {
+        companion object {
+            const val INSERT = 0
+            const val REMOVE = 1
+            const val MOVE = 2
+            const val CHANGE = 3
+        }
+    }
+
     /**
      * An internal class to return the IItem and relativePosition and its adapter at once. used to save one iteration inside the getInternalItem method
      */
@@ -879,14 +1040,6 @@ open class FastAdapter<Item : GenericItem> : RecyclerView.Adapter<RecyclerView.V
     companion object {
         private const val TAG = "FastAdapter"
 
-        private fun floorIndex(sparseArray: SparseArray<*>, key: Int): Int {
-            var index = sparseArray.indexOfKey(key)
-            if (index < 0) {
-                index = index.inv() - 1
-            }
-            return index
-        }
-
         /**
          * Creates a new FastAdapter with the provided adapters
          * if adapters is null, a default ItemAdapter is defined
@@ -0,0 +1,15 @@
+package com.mikepenz.fastadapter
+
+/**
+ * An [ISelectionListener] which is informed once about all items changed by a bulk selection (e.g. by `SelectExtension.selectRange`),
+ * instead of once per item.
+ */
+interface ISelectionRangeListener<Item : GenericItem> : ISelectionListener<Item> {
+    /**
+     * Is called, whenever multiple items are selected or deselected at once
+     *
+     * @param items the items who's selection state changed
+     * @param selected the new selection state of the items
+     */
+    fun onSelectionChanged(items: List<Item>, selected: Boolean)
+}
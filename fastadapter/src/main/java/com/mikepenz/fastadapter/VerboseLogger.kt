@@ -5,7 +5,7 @@ import android.util.Log
 /**
  * @author pa.gulko zTrap (16.10.2019)
  */
-internal class VerboseLogger(private val tag: String) {
+internal class VerboseLogger(val tag: String) {
 
     var isEnabled = false
 
@@ -14,4 +14,11 @@ internal class VerboseLogger(private val tag: String) {
             Log.v(tag, message)
         }
     }
-}
\ No newline at end of file
+
+    /** Only builds the message if logging is enabled */
+    inline fun log(message: () -> String) {
+        if (isEnabled) {
+            Log.v(tag, message())
+        }
+    }
+}
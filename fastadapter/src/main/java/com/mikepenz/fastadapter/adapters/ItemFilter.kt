@@ -1,11 +1,19 @@
 package com.mikepenz.fastadapter.adapters
 
+import android.os.Handler
+import android.os.Looper
 import android.widget.Filter
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListUpdateCallback
 import androidx.recyclerview.widget.RecyclerView
+import com.mikepenz.fastadapter.FastAdapter
 import com.mikepenz.fastadapter.GenericItem
+import com.mikepenz.fastadapter.IAdapterNotifier
 import com.mikepenz.fastadapter.listeners.ItemFilterListener
 import com.mikepenz.fastadapter.select.SelectExtension
 import java.util.Arrays.asList
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.math.min
 
 /**
@@ -25,6 +33,24 @@ open class ItemFilter<Model, Item : GenericItem>(private val itemAdapter: ModelA
     //the filter predicate which is used in the ItemFilter
     var filterPredicate: ((item: Item, constraint: CharSequence?) -> Boolean)? = null
 
+    /**
+     * The executor used for the incremental filter mode. If set, [ModelAdapter.filter] uses [filterIncremental] instead of the default [Filter] behaviour
+     */
+    var incrementalExecutor: Executor? = null
+
+    /**
+     * Defines if the incremental filter mode only filters the previous results, if the new constraint extends the previous one.
+     * This requires a [filterPredicate] where a match of the longer constraint implies a match of the shorter one (e.g. `contains`, `startsWith`)
+     */
+    var refineExtendedConstraint = true
+
+    // the state of the incremental filter mode, only accessed on the main thread
+    private val filterGeneration = AtomicInteger()
+    private var originalSnapshot: List<Item>? = null
+    private var incrementalConstraint: CharSequence? = null
+    private var incrementalResults: List<Item>? = null
+    private val mainHandler by lazy { Handler(Looper.getMainLooper()) }
+
     /**
      * Helper method to get all selections from the ItemAdapter's original item list
      *
@@ -66,6 +92,12 @@ open class ItemFilter<Model, Item : GenericItem>(private val itemAdapter: ModelA
 
         this.constraint = constraint
 
+        //a running incremental filter is outdated now, and the original items may have changed
+        filterGeneration.incrementAndGet()
+        originalSnapshot = null
+        incrementalConstraint = null
+        incrementalResults = null
+
         // Gets original items or adapter items (set to original items)
         // Result is always nonnull
         val items: List<Item> = originalItems ?: ArrayList(itemAdapter.adapterItems).also {
@@ -114,6 +146,108 @@ open class ItemFilter<Model, Item : GenericItem>(private val itemAdapter: ModelA
         publishResults(filter, performFiltering(filter))
     }
 
+    /**
+     * Filters the items on the [incrementalExecutor], falls back to the default [Filter] behaviour if no executor is set.
+     *
+     * A new constraint cancels a still running filter operation. If the new constraint extends the previous one, only the previous results are filtered (see [refineExtendedConstraint]).
+     * The results are published on the main thread via a computed diff, instead of notifying the whole range as changed.
+     * Must be called from the main thread.
+     *
+     * @param constraint the constraint used to filter the items
+     */
+    fun filterIncremental(constraint: CharSequence?) {
+        val executor = incrementalExecutor ?: return filter(constraint)
+        val generation = filterGeneration.incrementAndGet()
+
+        //return nothing
+        if (originalItems == null && constraint.isNullOrEmpty()) {
+            return
+        }
+
+        //call extensions
+        itemAdapter.fastAdapter?.extensions?.forEach { adapterExtension ->
+            adapterExtension.performFiltering(constraint)
+        }
+
+        this.constraint = constraint
+
+        // remember the original items, and keep a copy which is safe to be read in the background
+        val original = originalItems ?: ArrayList(itemAdapter.adapterItems).also {
+            originalItems = it
+            originalSnapshot = null
+            incrementalResults = null
+        }
+        val snapshot = originalSnapshot ?: ArrayList(original).also { originalSnapshot = it }
+
+        val previousConstraint = incrementalConstraint
+        val source = if (refineExtendedConstraint && !constraint.isNullOrEmpty() && !previousConstraint.isNullOrEmpty() && constraint.startsWith(previousConstraint)) {
+            incrementalResults ?: snapshot
+        } else {
+            snapshot
+        }
+        val previousItems = ArrayList(itemAdapter.adapterItems)
+
+        executor.execute {
+            val filteredItems = if (constraint.isNullOrEmpty()) {
+                source
+            } else {
+                filterItems(source, constraint, generation) ?: return@execute
+            }
+            if (filterGeneration.get() != generation) {
+                return@execute
+            }
+            //the filter keeps the order of the items, no need to detect moves
+            val diffResult = DiffUtil.calculateDiff(FilterDiffCallback(previousItems, filteredItems), false)
+            mainHandler.post {
+                publishIncremental(generation, constraint, filteredItems, previousItems, diffResult)
+            }
+        }
+    }
+
+    /**
+     * Runs the [filterPredicate] over the given items, checking for a newer constraint in between
+     *
+     * @return the filtered items, or null if the filter operation was cancelled
+     */
+    private fun filterItems(items: List<Item>, constraint: CharSequence, generation: Int): List<Item>? {
+        val filterPredicate = filterPredicate ?: return items
+        val filteredItems = ArrayList<Item>()
+        items.forEachIndexed { index, item ->
+            if (index % CANCELLATION_CHECK_INTERVAL == 0 && filterGeneration.get() != generation) {
+                return null
+            }
+            if (filterPredicate(item, constraint)) {
+                filteredItems.add(item)
+            }
+        }
+        return filteredItems
+    }
+
+    /** Applies the results of the incremental filter, if they were not superseded in the meantime */
+    private fun publishIncremental(generation: Int, constraint: CharSequence?, filteredItems: List<Item>, previousItems: List<Item>, diffResult: DiffUtil.DiffResult) {
+        if (filterGeneration.get() != generation) {
+            return
+        }
+
+        //the diff is only valid if the adapter was not modified while filtering
+        val adapterItems = itemAdapter.adapterItems
+        val unchanged = adapterItems.size == previousItems.size && previousItems.indices.all { adapterItems[it] === previousItems[it] }
+        itemAdapter.setInternal(filteredItems, false, if (unchanged) DiffResultNotifier(diffResult) else null)
+
+        if (constraint.isNullOrEmpty()) {
+            //our filter was cleared we can now forget the old OriginalItems
+            originalItems = null
+            originalSnapshot = null
+            incrementalConstraint = null
+            incrementalResults = null
+            itemFilterListener?.onReset()
+        } else {
+            incrementalConstraint = constraint
+            incrementalResults = filteredItems
+            itemFilterListener?.itemsFiltered(constraint, filteredItems)
+        }
+    }
+
     /**
      * Searches for the given item and calculates its relative position
      *
@@ -287,4 +421,52 @@ open class ItemFilter<Model, Item : GenericItem>(private val itemAdapter: ModelA
             itemAdapter
         } ?: itemAdapter.clear()
     }
+
+    /**
+     * Compares the items by their identifier, filtering does not modify the items themselves
+     */
+    private class FilterDiffCallback<Item : GenericItem>(private val oldItems: List<Item>, private val newItems: List<Item>) : DiffUtil.Callback() {
+        override fun getOldListSize(): Int = oldItems.size
+
+        override fun getNewListSize(): Int = newItems.size
+
+        override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
+            return oldItems[oldItemPosition].identifier == newItems[newItemPosition].identifier
+        }
+
+        override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
+            return oldItems[oldItemPosition] == newItems[newItemPosition]
+        }
+    }
+
+    /**
+     * A [IAdapterNotifier] dispatching a computed [DiffUtil.DiffResult] to the [FastAdapter]
+     */
+    private class DiffResultNotifier(private val diffResult: DiffUtil.DiffResult) : IAdapterNotifier {
+        override fun notify(fastAdapter: FastAdapter<*>, newItemsCount: Int, previousItemsCount: Int, itemsBeforeThisAdapter: Int): Boolean {
+            diffResult.dispatchUpdatesTo(object : ListUpdateCallback {
+                override fun onInserted(position: Int, count: Int) {
+                    fastAdapter.notifyAdapterItemRangeInserted(itemsBeforeThisAdapter + position, count)
+                }
+
+                override fun onRemoved(position: Int, count: Int) {
+                    fastAdapter.notifyAdapterItemRangeRemoved(itemsBeforeThisAdapter + position, count)
+                }
+
+                override fun onMoved(fromPosition: Int, toPosition: Int) {
+                    fastAdapter.notifyAdapterItemMoved(itemsBeforeThisAdapter + fromPosition, itemsBeforeThisAdapter + toPosition)
+                }
+
+                override fun onChanged(position: Int, count: Int, payload: Any?) {
+                    fastAdapter.notifyAdapterItemRangeChanged(itemsBeforeThisAdapter + position, count, payload)
+                }
+            })
+            return false
+        }
+    }
+
+    companion object {
+        // the amount of items filtered between checks for a newer constraint
+        private const val CANCELLATION_CHECK_INTERVAL = 256
+    }
 }
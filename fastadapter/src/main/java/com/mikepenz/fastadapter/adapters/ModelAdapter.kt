@@ -127,7 +127,11 @@ open class ModelAdapter<Model, Item : GenericItem>(
      * @param constraint the string used to filter the list
      */
     override fun filter(constraint: CharSequence?) {
-        itemFilter.filter(constraint)
+        if (itemFilter.incrementalExecutor != null) {
+            itemFilter.filterIncremental(constraint)
+        } else {
+            itemFilter.filter(constraint)
+        }
     }
 
     /**
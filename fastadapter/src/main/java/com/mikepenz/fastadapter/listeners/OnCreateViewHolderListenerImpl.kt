@@ -6,12 +6,18 @@ import com.mikepenz.fastadapter.FastAdapter
 import com.mikepenz.fastadapter.GenericItem
 import com.mikepenz.fastadapter.IHookable
 import com.mikepenz.fastadapter.IItemVHFactory
+import com.mikepenz.fastadapter.utils.EventHookTable
 import com.mikepenz.fastadapter.utils.bind
+import com.mikepenz.fastadapter.utils.bindShared
+import java.util.*
 
 /**
  * Default implementation of the OnCreateViewHolderListener
  */
 open class OnCreateViewHolderListenerImpl<Item : GenericItem> : OnCreateViewHolderListener<Item> {
+
+    // the event hook table per view type (identified by its factory), used for the shared event hook dispatch
+    private val eventHookTables = IdentityHashMap<IItemVHFactory<*>, EventHookTable>()
     /**
      * Is called inside the onCreateViewHolder method and creates the viewHolder based on the provided viewTyp
      *
@@ -30,6 +36,16 @@ open class OnCreateViewHolderListenerImpl<Item : GenericItem> : OnCreateViewHold
      * @return the viewHolder given as param
      */
     override fun onPostCreateViewHolder(fastAdapter: FastAdapter<Item>, viewHolder: RecyclerView.ViewHolder, itemVHFactory: IItemVHFactory<*>): RecyclerView.ViewHolder {
+        if (fastAdapter.sharedEventHookDispatch) {
+            eventHookTables[itemVHFactory] = bindShared(
+                    viewHolder,
+                    fastAdapter.eventHooks,
+                    (itemVHFactory as? IHookable<*>)?.eventHooks,
+                    eventHookTables[itemVHFactory],
+                    if (fastAdapter.attachDefaultListeners) fastAdapter.defaultEventHooks else null
+            )
+            return viewHolder
+        }
         fastAdapter.eventHooks.bind(viewHolder)
         //check if the item implements hookable and contains event hooks
         (itemVHFactory as? IHookable<*>)?.eventHooks?.bind(viewHolder)
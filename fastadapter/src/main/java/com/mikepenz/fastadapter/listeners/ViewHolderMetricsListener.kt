@@ -0,0 +1,39 @@
+package com.mikepenz.fastadapter.listeners
+
+/**
+ * Receives timing and count metrics for the ViewHolders of a [com.mikepenz.fastadapter.FastAdapter], per view type.
+ * See [com.mikepenz.fastadapter.FastAdapter.metricsListener]
+ *
+ * All functions are called on the main thread, and should return fast as they are called within the layout pass.
+ */
+interface ViewHolderMetricsListener {
+    /**
+     * Is called after a ViewHolder was created in onCreateViewHolder
+     *
+     * @param viewType      the type of the created ViewHolder
+     * @param durationNanos the time it took to create the ViewHolder, including the inflation and attaching the listeners
+     */
+    fun onViewHolderCreated(viewType: Int, durationNanos: Long)
+
+    /**
+     * Is called after a ViewHolder was bound in onBindViewHolder
+     *
+     * @param viewType      the type of the bound ViewHolder
+     * @param durationNanos the time it took to bind the ViewHolder
+     */
+    fun onViewHolderBound(viewType: Int, durationNanos: Long)
+
+    /**
+     * Is called when a ViewHolder was recycled
+     *
+     * @param viewType the type of the recycled ViewHolder
+     */
+    fun onViewHolderRecycled(viewType: Int)
+
+    /**
+     * Is called when a ViewHolder could not be recycled because of its transient state
+     *
+     * @param viewType the type of the ViewHolder
+     */
+    fun onViewHolderFailedToRecycle(viewType: Int)
+}
@@ -10,6 +10,8 @@ import com.mikepenz.fastadapter.dsl.FastAdapterDsl
 import com.mikepenz.fastadapter.extensions.ExtensionsFactories
 import com.mikepenz.fastadapter.utils.AdapterPredicate
 import java.util.*
+import kotlin.math.max
+import kotlin.math.min
 
 /**
  * Extension method to retrieve or create the SelectExtension from the current FastAdapter.
@@ -60,6 +62,13 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
     //a listener that get's notified whenever an item is selected or deselected
     var selectionListener: ISelectionListener<Item>? = null
 
+    // the selected items by their identifier, maintained by this extension and updated incrementally with the notifications of the adapter
+    private val selectedItemsIndex = LinkedHashMap<Long, Item>()
+    private var isSelectedItemsIndexValid = false
+    // the displayed selected items by their global position, updated incrementally with the notifications of the adapter
+    private var selectionsIndex = HashMap<Int, Item>()
+    private var isSelectionsIndexValid = false
+
     //-------------------------
     //-------------------------
     //Selection stuff
@@ -67,21 +76,63 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
     //-------------------------
 
     /**
+     * The selections are maintained by this extension, and updated with the notifications of the adapter.
+     * If displayed items are selected without this extension, notify the adapter via `notifyAdapterItemChanged` so the selection is picked up.
+     *
      * @return a set with the global positions of all selected items (which are currently in the list (includes expanded expandable items))
      */
     val selections: Set<Int>
         get() {
-            return (0 until fastAdapter.itemCount).mapNotNullTo(ArraySet<Int>()) { i ->
-                i.takeIf { fastAdapter.getItem(i)?.isSelected == true }
-            }
+            ensureSelectionsIndex()
+            //add in ascending order, which keeps the insertion into the ArraySet cheap
+            return selectionsIndex.keys.sorted().toCollection(ArraySet<Int>(selectionsIndex.size))
         }
 
     /**
+     * The selected items are maintained by this extension, and updated with the notifications of the adapter.
+     * If displayed items are selected without this extension, notify the adapter via `notifyAdapterItemChanged` so the selection is picked up.
+     * Sub items of collapsed items have to be selected via this extension (e.g. [select] with the item).
+     *
      * @return a set with all items which are currently selected (includes subitems)
      */
     val selectedItems: MutableSet<Item>
         get() {
-            val items = ArraySet<Item>()
+            ensureSelectedItemsIndex()
+            return LinkedHashSet(selectedItemsIndex.values)
+        }
+
+    /**
+     * @return the count of all items which are currently selected (includes subitems)
+     */
+    val selectedCount: Int
+        get() {
+            ensureSelectedItemsIndex()
+            return selectedItemsIndex.size
+        }
+
+    /** Rebuilds the selections index if it was invalidated, or drops positions deselected without this extension */
+    private fun ensureSelectionsIndex() {
+        if (!isSelectionsIndexValid) {
+            selectionsIndex.clear()
+            for (i in 0 until fastAdapter.itemCount) {
+                val item = fastAdapter.getItem(i) ?: continue
+                if (item.isSelected) {
+                    selectionsIndex[i] = item
+                }
+            }
+            isSelectionsIndexValid = true
+        } else {
+            selectionsIndex.values.removeAll { !it.isSelected }
+        }
+    }
+
+    /**
+     * Rebuilds the selected items index if it was invalidated, or drops items deselected without this extension.
+     * Selected sub items which are not displayed are dropped if they are no longer part of the hierarchy of a displayed item.
+     */
+    private fun ensureSelectedItemsIndex() {
+        if (!isSelectedItemsIndexValid) {
+            selectedItemsIndex.clear()
             fastAdapter.recursive(object : AdapterPredicate<Item> {
                 override fun apply(
                         lastParentAdapter: IAdapter<Item>,
@@ -90,18 +141,174 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
                         position: Int
                 ): Boolean {
                     if (item.isSelected) {
-                        items.add(item)
+                        selectedItemsIndex[item.identifier] = item
                     }
                     return false
                 }
             }, false)
-            return items
+            isSelectedItemsIndexValid = true
+            return
+        }
+
+        selectedItemsIndex.values.removeAll { !it.isSelected }
+        if (selectedItemsIndex.values.none { (it as? ISubItem<*>)?.parent != null }) {
+            return
+        }
+
+        //only sub items can be hidden, check those which are not displayed
+        ensureSelectionsIndex()
+        val displayed = Collections.newSetFromMap(IdentityHashMap<Any, Boolean>())
+        displayed.addAll(selectionsIndex.values)
+        val displayedRoots = IdentityHashMap<Any, Boolean>()
+        selectedItemsIndex.values.removeAll { !displayed.contains(it) && !isInDisplayedHierarchy(it, displayedRoots) }
+    }
+
+    /** @return true if every parent of the item still contains it, and its root item is displayed */
+    private fun isInDisplayedHierarchy(item: Item, displayedRoots: IdentityHashMap<Any, Boolean>): Boolean {
+        var child: Any = item
+        var parent = (item as? ISubItem<*>)?.parent
+        while (parent != null) {
+            if (parent.subItems.none { it === child }) {
+                return false
+            }
+            child = parent
+            parent = (parent as? ISubItem<*>)?.parent
+        }
+        return displayedRoots.getOrPut(child) {
+            val position = fastAdapter.getPosition(child as Item)
+            position >= 0 && fastAdapter.getItem(position) === child
+        }
+    }
+
+    /** @return true if the item is a sub item of a collapsed item, so it is not displayed */
+    private fun isHidden(item: Item): Boolean {
+        var parent = (item as? ISubItem<*>)?.parent
+        while (parent != null) {
+            if (parent is IExpandable<*> && !parent.isExpanded) {
+                return true
+            }
+            parent = (parent as? ISubItem<*>)?.parent
+        }
+        return false
+    }
+
+    /** @return true if the removed sub item is still contained in its parent, e.g. because its parent was collapsed */
+    private fun isStillContained(item: Item): Boolean {
+        val parent = (item as? ISubItem<*>)?.parent ?: return false
+        return parent.subItems.any { it === item }
+    }
+
+    /** Adds the selected sub items of a collapsed item to the selected items index, the same way the rebuild visits them */
+    private fun addHiddenSelections(item: Item) {
+        val expandable = item as? IExpandable<*> ?: return
+        if (expandable.isExpanded) {
+            return
+        }
+        expandable.subItems.forEach { sub ->
+            val subItem = sub as Item
+            if (subItem.isSelected) {
+                selectedItemsIndex[subItem.identifier] = subItem
+            }
+            addHiddenSelections(subItem)
+        }
+    }
+
+    /** Adds the item at the given position to the selection indices if it is selected, or removes it otherwise */
+    private fun updateSelection(item: Item, position: Int) {
+        if (item.isSelected) {
+            if (isSelectionsIndexValid) {
+                selectionsIndex[position] = item
+            }
+            if (isSelectedItemsIndexValid) {
+                selectedItemsIndex[item.identifier] = item
+            }
+        } else {
+            if (isSelectionsIndexValid) {
+                selectionsIndex.remove(position)
+            }
+            if (isSelectedItemsIndexValid && selectedItemsIndex[item.identifier] === item) {
+                selectedItemsIndex.remove(item.identifier)
+            }
+        }
+        if (isSelectedItemsIndexValid) {
+            addHiddenSelections(item)
+        }
+    }
+
+    /** Removes items which are no longer displayed from the selected items index, unless they are still contained in their parent */
+    private fun onItemsRemoved(removedItems: Collection<Item>) {
+        if (!isSelectedItemsIndexValid) {
+            return
+        }
+        for (item in removedItems) {
+            if (selectedItemsIndex[item.identifier] === item && !isStillContained(item)) {
+                selectedItemsIndex.remove(item.identifier)
+            }
+        }
+    }
+
+    /** Moves the positions of the selections index, the given function maps the previous position to the new position */
+    private inline fun shiftSelections(shift: (Int) -> Int) {
+        val shifted = HashMap<Int, Item>(selectionsIndex.size)
+        for ((position, item) in selectionsIndex) {
+            shifted[shift(position)] = item
+        }
+        selectionsIndex = shifted
+    }
+
+    /** Updates the selection indices after the item got selected */
+    private fun onItemSelected(item: Item, position: Int) {
+        if (isSelectedItemsIndexValid) {
+            selectedItemsIndex[item.identifier] = item
+        }
+        if (position >= 0) {
+            selectionsIndex[position] = item
+        } else if (!isHidden(item)) {
+            //we do not know if (and where) the item is displayed
+            isSelectionsIndexValid = false
+        }
+    }
+
+    /** Updates the selection indices after the item got deselected */
+    private fun onItemDeselected(item: Item, position: Int) {
+        selectedItemsIndex.remove(item.identifier)
+        if (position >= 0) {
+            selectionsIndex.remove(position)
+        } else {
+            selectionsIndex.values.removeAll { it === item }
         }
+    }
+
+    /** The selection indices are rebuilt with the next access */
+    private fun invalidateSelectionIndices() {
+        isSelectedItemsIndexValid = false
+        isSelectionsIndexValid = false
+    }
 
     override fun withSavedInstanceState(savedInstanceState: Bundle?, prefix: String) {
         val selectedItems = savedInstanceState?.getLongArray(BUNDLE_SELECTIONS + prefix) ?: return
-        for (id in selectedItems) {
-            selectByIdentifier(id, false, true)
+        val identifiers = selectedItems.toHashSet()
+        var firstPosition = Int.MAX_VALUE
+        var lastPosition = RecyclerView.NO_POSITION
+
+        //restore all selections in a single traversal, and notify the affected range once
+        fastAdapter.recursive(object : AdapterPredicate<Item> {
+            override fun apply(lastParentAdapter: IAdapter<Item>, lastParentPosition: Int, item: Item, position: Int): Boolean {
+                if (item.isSelectable && identifiers.contains(item.identifier)) {
+                    item.isSelected = true
+                    onItemSelected(item, position)
+                    selectionListener?.onSelectionChanged(item, true)
+                    if (position >= 0) {
+                        firstPosition = min(firstPosition, position)
+                        lastPosition = max(lastPosition, position)
+                    }
+                }
+                return false
+            }
+        }, false)
+
+        if (lastPosition >= 0) {
+            fastAdapter.notifyItemRangeChanged(firstPosition, lastPosition - firstPosition + 1)
         }
     }
 
@@ -151,17 +358,76 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
         return false
     }
 
-    override fun notifyAdapterDataSetChanged() {}
+    override fun notifyAdapterDataSetChanged() {
+        invalidateSelectionIndices()
+    }
 
-    override fun notifyAdapterItemRangeInserted(position: Int, itemCount: Int) {}
+    override fun notifyAdapterItemRangeInserted(position: Int, itemCount: Int) {
+        if (!isSelectionsIndexValid && !isSelectedItemsIndexValid) {
+            return
+        }
+        if (isSelectionsIndexValid) {
+            shiftSelections { if (it >= position) it + itemCount else it }
+        }
+        for (i in position until position + itemCount) {
+            fastAdapter.getItem(i)?.let { updateSelection(it, i) }
+        }
+    }
 
-    override fun notifyAdapterItemRangeRemoved(position: Int, itemCount: Int) {}
+    override fun notifyAdapterItemRangeRemoved(position: Int, itemCount: Int) {
+        if (!isSelectionsIndexValid) {
+            //the removed items are unknown
+            isSelectedItemsIndexValid = false
+            return
+        }
+        val removedItems = ArrayList<Item>()
+        for (i in position until position + itemCount) {
+            selectionsIndex.remove(i)?.let { removedItems.add(it) }
+        }
+        shiftSelections { if (it >= position + itemCount) it - itemCount else it }
+        onItemsRemoved(removedItems)
+    }
 
-    override fun notifyAdapterItemMoved(fromPosition: Int, toPosition: Int) {}
+    override fun notifyAdapterItemMoved(fromPosition: Int, toPosition: Int) {
+        //the selected items stay the same, only their positions change
+        if (isSelectionsIndexValid) {
+            shiftSelections {
+                when {
+                    it == fromPosition -> toPosition
+                    it in (fromPosition + 1)..toPosition -> it - 1
+                    it in toPosition until fromPosition -> it + 1
+                    else -> it
+                }
+            }
+        }
+    }
 
-    override fun notifyAdapterItemRangeChanged(position: Int, itemCount: Int, payload: Any?) {}
+    override fun notifyAdapterItemRangeChanged(position: Int, itemCount: Int, payload: Any?) {
+        if (!isSelectionsIndexValid && payload == null) {
+            //without a payload the items may have been replaced, and the replaced items are unknown
+            isSelectedItemsIndexValid = false
+        }
+        if (!isSelectionsIndexValid && !isSelectedItemsIndexValid) {
+            return
+        }
+        val replacedItems = ArrayList<Item>()
+        val changedItems = Collections.newSetFromMap(IdentityHashMap<Any, Boolean>())
+        for (i in position until position + itemCount) {
+            val item = fastAdapter.getItem(i) ?: continue
+            val previous = if (isSelectionsIndexValid) selectionsIndex[i] else null
+            if (previous != null && previous !== item) {
+                replacedItems.add(previous)
+            }
+            changedItems.add(item)
+            updateSelection(item, i)
+        }
+        //replaced items which moved within the range are still displayed
+        onItemsRemoved(replacedItems.filterNot { changedItems.contains(it) })
+    }
 
-    override fun set(items: List<Item>, resetFilter: Boolean) {}
+    override fun set(items: List<Item>, resetFilter: Boolean) {
+        //the item list notifies the changed ranges afterwards, which update the selection indices
+    }
 
     override fun performFiltering(constraint: CharSequence?) {}
 
@@ -216,6 +482,11 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
             //we toggle the state of the view
             item.isSelected = !selected
             view.isSelected = !selected
+            if (selected) {
+                onItemDeselected(item, position)
+            } else {
+                onItemSelected(item, position)
+            }
 
             //notify that the selection changed
             selectionListener?.onSelectionChanged(item, !selected)
@@ -254,6 +525,7 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
             return
         }
         item.isSelected = true
+        onItemSelected(item, RecyclerView.NO_POSITION)
         selectionListener?.onSelectionChanged(item, true)
     }
 
@@ -298,6 +570,7 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
         }
 
         item.isSelected = true
+        onItemSelected(item, position)
 
         fastAdapter.notifyItemChanged(position)
 
@@ -308,6 +581,55 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
         }
     }
 
+    /**
+     * Selects or deselects all items in a range, from and to are inclusive.
+     * The selection state is updated in one pass, the adapter is notified once per contiguous range of changed items,
+     * and the [selectionListener] is called once with all changed items if it is an [ISelectionRangeListener], otherwise once per item.
+     *
+     * @param from                   the global position to start from
+     * @param to                     the global position to end with
+     * @param select                 true if the items should be selected, false if they should be deselected
+     * @param payload                the payload to pass to the adapter when notifying the changed items
+     * @param considerSelectableFlag true if items which are not selectable should be skipped
+     */
+    @JvmOverloads
+    fun selectRange(from: Int, to: Int, select: Boolean, payload: Any? = null, considerSelectableFlag: Boolean = true) {
+        val start = max(min(from, to), 0)
+        val end = min(max(from, to), fastAdapter.itemCount - 1)
+        val changedItems = ArrayList<Item>()
+        var runStart = RecyclerView.NO_POSITION
+        for (i in start..end) {
+            val item = fastAdapter.getItem(i)
+            if (item != null && item.isSelected != select && (!considerSelectableFlag || item.isSelectable)) {
+                item.isSelected = select
+                if (select) {
+                    onItemSelected(item, i)
+                } else {
+                    onItemDeselected(item, i)
+                }
+                changedItems.add(item)
+                if (runStart == RecyclerView.NO_POSITION) {
+                    runStart = i
+                }
+            } else if (runStart != RecyclerView.NO_POSITION) {
+                fastAdapter.notifyItemRangeChanged(runStart, i - runStart, payload)
+                runStart = RecyclerView.NO_POSITION
+            }
+        }
+        if (runStart != RecyclerView.NO_POSITION) {
+            fastAdapter.notifyItemRangeChanged(runStart, end + 1 - runStart, payload)
+        }
+
+        val selectionListener = selectionListener
+        if (selectionListener is ISelectionRangeListener<Item>) {
+            if (changedItems.isNotEmpty()) {
+                selectionListener.onSelectionChanged(changedItems, select)
+            }
+        } else if (selectionListener != null) {
+            changedItems.forEach { selectionListener.onSelectionChanged(it, select) }
+        }
+    }
+
     /**
      * Selects an item by it's identifier
      *
@@ -353,6 +675,11 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
                 return false
             }
         }, false)
+        //every item was visited, nothing is selected anymore
+        selectedItemsIndex.clear()
+        selectionsIndex.clear()
+        isSelectedItemsIndexValid = true
+        isSelectionsIndexValid = true
         fastAdapter.notifyDataSetChanged()
     }
 
@@ -393,6 +720,7 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
     @JvmOverloads
     fun deselect(item: Item, position: Int = RecyclerView.NO_POSITION, entries: MutableIterator<Int>? = null) {
         item.isSelected = false
+        onItemDeselected(item, position)
         entries?.remove()
         if (position >= 0) {
             fastAdapter.notifyItemChanged(position)
@@ -448,37 +776,47 @@ class SelectExtension<Item : GenericItem>(private val fastAdapter: FastAdapter<I
 
     /**
      * Deletes all current selected items
+     * Displayed items are removed from the adapter as contiguous ranges from the back, afterwards sub items are removed from their parents sub items
      *
      * @return a list of the IItem elements which were deleted
      */
     fun deleteAllSelectedItems(): List<Item> {
         val deletedItems = ArrayList<Item>()
-
         val positions = ArrayList<Int>()
         fastAdapter.recursive(object : AdapterPredicate<Item> {
             override fun apply(lastParentAdapter: IAdapter<Item>, lastParentPosition: Int, item: Item, position: Int): Boolean {
                 if (item.isSelected) {
-                    //if it's a subitem remove it from the parent
-                    (item as? IExpandable<*>?)?.let { expandable ->
-                        //a sub item which is not in the list can be instantly deleted
-                        expandable.parent?.subItems?.remove(item)
-                    }
+                    deletedItems.add(item)
                     if (position != RecyclerView.NO_POSITION) {
-                        //a normal displayed item can only be deleted afterwards
+                        //a displayed item is removed from the adapter afterwards
                         positions.add(position)
                     }
                 }
                 return false
             }
         }, false)
+        if (deletedItems.isEmpty()) {
+            return deletedItems
+        }
 
-        //we have to re-fetch the selections array again and again as the position will change after one item is deleted
-        for (i in positions.indices.reversed()) {
-            val ri = fastAdapter.getRelativeInfo(positions[i])
-            if (ri.item != null && ri.item!!.isSelected) { //double verify
-                (ri.adapter as? IItemAdapter<*, *>)?.remove(positions[i])
+        //the positions are ascending, remove contiguous ranges within the same adapter, starting at the end
+        var end = positions.size - 1
+        while (end >= 0) {
+            val adapter = fastAdapter.getAdapter(positions[end])
+            var start = end
+            while (start > 0 && positions[start - 1] == positions[start] - 1 && fastAdapter.getAdapter(positions[start - 1]) === adapter) {
+                start--
             }
+            (adapter as? IItemAdapter<*, *>)?.removeRange(positions[start], end - start + 1)
+            end = start - 1
         }
+
+        //afterwards remove the sub items from their parents, once per parent as we must not modify the sub items while iterating over them.
+        //item lists resolving positions via the hierarchy already removed the displayed sub items, those are not contained anymore
+        val deletedSet = Collections.newSetFromMap(IdentityHashMap<Any, Boolean>())
+        deletedSet.addAll(deletedItems)
+        deletedItems.mapNotNullTo(Collections.newSetFromMap(IdentityHashMap<IParentItem<*>, Boolean>())) { (it as? ISubItem<*>)?.parent }
+                .forEach { parent -> parent.subItems.removeAll { deletedSet.contains(it) } }
         return deletedItems
     }
 
@@ -0,0 +1,120 @@
+package com.mikepenz.fastadapter.utils
+
+import com.mikepenz.fastadapter.IAdapter
+
+/**
+ * Keeps the item count of every adapter (indexed by its order) in a fenwick tree.
+ * Allows to get the global offset of an adapter, and the adapter for a global position in O(log A),
+ * and to update the size of a single adapter in O(log A) instead of recounting all adapters.
+ */
+internal class AdapterOffsetTable {
+    // the item count of each adapter, as known to this table
+    private var sizes = IntArray(0)
+    private var tree = IntArray(1)
+
+    /** The amount of adapters in this table */
+    var count = 0
+        private set
+
+    /** The total amount of items over all adapters */
+    var totalSize = 0
+        private set
+
+    /** Recounts the items of all adapters */
+    fun rebuild(adapters: List<IAdapter<*>>) {
+        count = adapters.size
+        if (sizes.size != count) {
+            sizes = IntArray(count)
+            tree = IntArray(count + 1)
+        }
+        totalSize = 0
+        for (i in 0 until count) {
+            val size = adapters[i].adapterItemCount
+            sizes[i] = size
+            tree[i + 1] = size
+            totalSize += size
+        }
+        // build the tree in O(A)
+        for (i in 1..count) {
+            val parent = i + (i and -i)
+            if (parent <= count) {
+                tree[parent] += tree[i]
+            }
+        }
+    }
+
+    /**
+     * Updates the sizes of the adapters around a structural change at the given global position.
+     *
+     * @param position the global position of the change
+     * @param delta    the expected change of the total item count
+     * @return false if the change could not be located, in which case the table has to be rebuilt
+     */
+    fun applyChange(adapters: List<IAdapter<*>>, position: Int, delta: Int): Boolean {
+        if (adapters.size != count || position < 0) {
+            return false
+        }
+        // the first adapter which could contain the position is the one holding the item before it
+        var order = when {
+            position == 0 -> 0
+            position - 1 < totalSize -> orderOf(position - 1)
+            else -> return false
+        }
+        var start = offsetOf(order)
+        var observed = 0
+        while (order < count && start <= position) {
+            val previousSize = sizes[order]
+            val size = adapters[order].adapterItemCount
+            if (size != previousSize) {
+                update(order, size)
+                observed += size - previousSize
+            }
+            start += previousSize
+            order++
+        }
+        return observed == delta
+    }
+
+    /**
+     * @return the amount of items of all adapters before the given order
+     */
+    fun offsetOf(order: Int): Int {
+        var i = if (order > count) count else order
+        var sum = 0
+        while (i > 0) {
+            sum += tree[i]
+            i -= i and -i
+        }
+        return sum
+    }
+
+    /**
+     * @param position the global position, requires `0 <= position < totalSize`
+     * @return the order of the adapter holding the given position
+     */
+    fun orderOf(position: Int): Int {
+        var order = 0
+        var remaining = position
+        var step = Integer.highestOneBit(count)
+        while (step > 0) {
+            val next = order + step
+            if (next <= count && tree[next] <= remaining) {
+                order = next
+                remaining -= tree[next]
+            }
+            step = step shr 1
+        }
+        return order
+    }
+
+    private fun update(order: Int, size: Int) {
+        val delta = size - sizes[order]
+        sizes[order] = size
+        totalSize += delta
+        var i = order + 1
+        while (i <= count) {
+            tree[i] += delta
+            i += i and -i
+        }
+    }
+}
@@ -36,16 +36,17 @@ open class DefaultItemListImpl<Item : GenericItem> @JvmOverloads constructor(
         val length = _items.size
         //make sure we do not delete too many items
         val saveItemCount = min(itemCount, length - position + preItemCount)
-        for (i in 0 until saveItemCount) {
-            _items.removeAt(position - preItemCount)
+        if (saveItemCount <= 0) {
+            return
         }
+        //drop the whole block at once, instead of shifting the tail for every single item
+        val relativePosition = position - preItemCount
+        _items.subList(relativePosition, relativePosition + saveItemCount).clear()
         fastAdapter?.notifyAdapterItemRangeRemoved(position, saveItemCount)
     }
 
     override fun move(fromPosition: Int, toPosition: Int, preItemCount: Int) {
-        val item = _items[fromPosition - preItemCount]
-        _items.removeAt(fromPosition - preItemCount)
-        _items.add(toPosition - preItemCount, item)
+        moveInList(_items, fromPosition - preItemCount, toPosition - preItemCount)
         fastAdapter?.notifyAdapterItemMoved(fromPosition, toPosition)
     }
 
@@ -108,3 +109,14 @@ open class DefaultItemListImpl<Item : GenericItem> @JvmOverloads constructor(
         }
     }
 }
+
+/**
+ * Moves the element from one index to another, only shifting the elements in between instead of the whole tail of the list
+ */
+internal fun <T> moveInList(list: MutableList<T>, fromIndex: Int, toIndex: Int) {
+    if (fromIndex < toIndex) {
+        Collections.rotate(list.subList(fromIndex, toIndex + 1), -1)
+    } else if (fromIndex > toIndex) {
+        Collections.rotate(list.subList(toIndex, fromIndex + 1), 1)
+    }
+}
@@ -1,11 +1,13 @@
 package com.mikepenz.fastadapter.utils
 
+import android.view.MotionEvent
 import android.view.View
 import androidx.recyclerview.widget.RecyclerView
 import com.mikepenz.fastadapter.FastAdapter
 import com.mikepenz.fastadapter.GenericItem
 import com.mikepenz.fastadapter.R
 import com.mikepenz.fastadapter.listeners.*
+import java.util.*
 
 /**
  * Binds the hooks to the viewHolder
@@ -86,3 +88,157 @@ internal fun <Item : GenericItem> EventHook<Item>.attachToView(viewHolder: Recyc
         is CustomEventHook<*> -> (this as CustomEventHook<Item>).attachEvent(view, viewHolder)
     }
 }
+
+/**
+ * The event hooks bound to a single view. Shared between all ViewHolders of the same type, and kept as tag on the view.
+ * Same as with [attachToView] the last hook of each kind bound to a view wins.
+ */
+internal class ViewEventHooks(
+        var clickHook: ClickEventHook<GenericItem>? = null,
+        var longClickHook: LongClickEventHook<GenericItem>? = null,
+        var touchHook: TouchEventHook<GenericItem>? = null
+) {
+    fun copy() = ViewEventHooks(clickHook, longClickHook, touchHook)
+
+    fun add(hook: EventHook<out GenericItem>) {
+        when (hook) {
+            is ClickEventHook<*> -> clickHook = hook as ClickEventHook<GenericItem>
+            is LongClickEventHook<*> -> longClickHook = hook as LongClickEventHook<GenericItem>
+            is TouchEventHook<*> -> touchHook = hook as TouchEventHook<GenericItem>
+        }
+    }
+}
+
+/**
+ * The views the event hooks of a view type bind to, in bind order. Built from the first ViewHolder of the type.
+ *
+ * @property hookIndices the index of the hook for every bound view
+ * @property viewHooks   the shared hooks for every bound view
+ */
+internal class EventHookTable(val hookCount: Int, val hookIndices: IntArray, val viewHooks: Array<ViewEventHooks>)
+
+/**
+ * Binds the hooks to the viewHolder via the [SharedEventHookListener].
+ * The first ViewHolder of a type builds the [EventHookTable], all further ViewHolders reuse its shared [ViewEventHooks].
+ * If the hooks bind to different views than for the first ViewHolder, the remaining hooks are attached via [attachToView].
+ *
+ * @param table        the table built for this type before, or null
+ * @param defaultHooks the hooks attached to the itemView already, or null
+ * @return the table for this type
+ */
+internal fun bindShared(viewHolder: RecyclerView.ViewHolder, hooks: List<EventHook<out GenericItem>>, itemHooks: List<EventHook<out GenericItem>>?, table: EventHookTable?, defaultHooks: ViewEventHooks?): EventHookTable {
+    val hookCount = hooks.size + (itemHooks?.size ?: 0)
+    if (table != null && table.hookCount == hookCount) {
+        var entry = 0
+        var shared = true
+        for (hookIndex in 0 until hookCount) {
+            val hook = if (hookIndex < hooks.size) hooks[hookIndex] else itemHooks!![hookIndex - hooks.size]
+            if (!hook.isShareable) {
+                hook.bind(viewHolder)
+                continue
+            }
+            val view = hook.onBind(viewHolder)
+            val views = hook.onBindMany(viewHolder)
+            if (view != null) {
+                shared = shared && entry < table.hookIndices.size && table.hookIndices[entry] == hookIndex
+                if (shared) view.attachShared(viewHolder, table.viewHooks[entry++]) else (hook as EventHook<GenericItem>).attachToView(viewHolder, view)
+            }
+            if (views != null) {
+                for (v in views) {
+                    shared = shared && entry < table.hookIndices.size && table.hookIndices[entry] == hookIndex
+                    if (shared) v.attachShared(viewHolder, table.viewHooks[entry++]) else (hook as EventHook<GenericItem>).attachToView(viewHolder, v)
+                }
+            }
+        }
+        return table
+    }
+
+    // first ViewHolder of this type, group the hooks per view
+    val groups = IdentityHashMap<View, ViewEventHooks>()
+    defaultHooks?.let { groups[viewHolder.itemView] = it.copy() }
+    val hookIndices = ArrayList<Int>()
+    val boundViews = ArrayList<View>()
+    for (hookIndex in 0 until hookCount) {
+        val hook = if (hookIndex < hooks.size) hooks[hookIndex] else itemHooks!![hookIndex - hooks.size]
+        if (!hook.isShareable) {
+            hook.bind(viewHolder)
+            continue
+        }
+        val views = ArrayList<View>()
+        hook.onBind(viewHolder)?.let { views.add(it) }
+        hook.onBindMany(viewHolder)?.let { views.addAll(it) }
+        for (v in views) {
+            (groups[v] ?: ViewEventHooks().also { groups[v] = it }).add(hook)
+            hookIndices.add(hookIndex)
+            boundViews.add(v)
+        }
+    }
+    val viewHooks = Array(boundViews.size) { groups.getValue(boundViews[it]) }
+    for (i in boundViews.indices) {
+        boundViews[i].attachShared(viewHolder, viewHooks[i])
+    }
+    return EventHookTable(hookCount, hookIndices.toIntArray(), viewHooks)
+}
+
+/** Only click, long click and touch hooks are dispatched via the [SharedEventHookListener] */
+private val EventHook<out GenericItem>.isShareable: Boolean
+    get() = this is ClickEventHook<*> || this is LongClickEventHook<*> || this is TouchEventHook<*>
+
+private fun EventHook<out GenericItem>.bind(viewHolder: RecyclerView.ViewHolder) {
+    onBind(viewHolder)?.let { (this as EventHook<GenericItem>).attachToView(viewHolder, it) }
+    onBindMany(viewHolder)?.forEach { (this as EventHook<GenericItem>).attachToView(viewHolder, it) }
+}
+
+/**
+ * Attaches the [SharedEventHookListener] to a view, for the given hooks
+ */
+internal fun View.attachShared(viewHolder: RecyclerView.ViewHolder, hooks: ViewEventHooks) {
+    setTag(R.id.fastadapter_view_holder, viewHolder)
+    setTag(R.id.fastadapter_event_hooks, hooks)
+    if (hooks.clickHook != null) setOnClickListener(SharedEventHookListener)
+    if (hooks.longClickHook != null) setOnLongClickListener(SharedEventHookListener)
+    if (hooks.touchHook != null) setOnTouchListener(SharedEventHookListener)
+}
+
+/**
+ * One stateless listener for all views, resolving the hooks and the ViewHolder from the tags of the view
+ */
+internal object SharedEventHookListener : View.OnClickListener, View.OnLongClickListener, View.OnTouchListener {
+
+    override fun onClick(v: View) {
+        val hook = (v.getTag(R.id.fastadapter_event_hooks) as? ViewEventHooks)?.clickHook ?: return
+        val viewHolder = v.getTag(R.id.fastadapter_view_holder) as? RecyclerView.ViewHolder ?: return
+        val adapter = FastAdapter.getFromHolderTag<GenericItem>(viewHolder) ?: return
+        //we get the adapterPosition from the viewHolder
+        val pos = adapter.getHolderAdapterPosition(viewHolder)
+        //make sure the click was done on a valid item
+        if (pos != RecyclerView.NO_POSITION) {
+            val item: GenericItem = FastAdapter.getHolderAdapterItemTag(viewHolder) ?: return
+            hook.onClick(v, pos, adapter, item)
+        }
+    }
+
+    override fun onLongClick(v: View): Boolean {
+        val hook = (v.getTag(R.id.fastadapter_event_hooks) as? ViewEventHooks)?.longClickHook ?: return false
+        val viewHolder = v.getTag(R.id.fastadapter_view_holder) as? RecyclerView.ViewHolder ?: return false
+        val adapter = FastAdapter.getFromHolderTag<GenericItem>(viewHolder) ?: return false
+        val pos = adapter.getHolderAdapterPosition(viewHolder)
+        if (pos != RecyclerView.NO_POSITION) {
+            val item: GenericItem = FastAdapter.getHolderAdapterItemTag(viewHolder) ?: return false
+            return hook.onLongClick(v, pos, adapter, item)
+        }
+        return false
+    }
+
+    override fun onTouch(v: View, e: MotionEvent): Boolean {
+        val hook = (v.getTag(R.id.fastadapter_event_hooks) as? ViewEventHooks)?.touchHook ?: return false
+        val viewHolder = v.getTag(R.id.fastadapter_view_holder) as? RecyclerView.ViewHolder ?: return false
+        val adapter = FastAdapter.getFromHolderTag<GenericItem>(viewHolder) ?: return false
+        val pos = adapter.getHolderAdapterPosition(viewHolder)
+        if (pos != RecyclerView.NO_POSITION) {
+            val item: GenericItem = FastAdapter.getHolderAdapterItemTag(viewHolder) ?: return false
+            return hook.onTouch(v, e, pos, adapter, item)
+        }
+        return false
+    }
+}
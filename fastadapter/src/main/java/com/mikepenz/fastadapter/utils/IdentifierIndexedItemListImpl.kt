@@ -0,0 +1,203 @@
+package com.mikepenz.fastadapter.utils
+
+import com.mikepenz.fastadapter.GenericItem
+import com.mikepenz.fastadapter.IAdapterNotifier
+import kotlin.math.min
+
+/**
+ * An item list implementation which keeps an index from the identifier of an item to its relative position.
+ * This allows [getAdapterPosition] (and thus `FastAdapter.getPosition(identifier)`) to resolve in O(1) instead of scanning the list.
+ *
+ * The index is updated incrementally by the mutating functions of this list. Positions after a structural change are re-indexed lazily with the next lookup.
+ * Changes done directly to [items] are detected and cause the index to be rebuilt with the next lookup.
+ */
+open class IdentifierIndexedItemListImpl<Item : GenericItem> @JvmOverloads constructor(
+        items: List<Item> = ArrayList()
+) : DefaultItemListImpl<Item>(StampedArrayList(items)) {
+
+    private val identifierIndex = LongIntHashMap()
+    // all positions below this relative position are known to be indexed correctly
+    private var indexedCount = 0
+    // the modification stamp of the list at the time the index was last updated
+    private var indexedStamp = NO_STAMP
+
+    private val itemsStamp: Int
+        get() = (_items as? StampedArrayList<*>)?.stamp ?: NO_STAMP
+
+    override fun getAdapterPosition(identifier: Long): Int {
+        ensureIndexed()
+        val position = identifierIndex[identifier]
+        return if (position in 0 until _items.size && _items[position].identifier == identifier) position else -1
+    }
+
+    override fun remove(position: Int, preItemCount: Int) {
+        checkStamp()
+        _items.removeAt(position - preItemCount)
+        invalidateFrom(position - preItemCount)
+        fastAdapter?.notifyAdapterItemRemoved(position)
+    }
+
+    override fun removeRange(position: Int, itemCount: Int, preItemCount: Int) {
+        checkStamp()
+        //global position to relative
+        val length = _items.size
+        //make sure we do not delete too many items
+        val saveItemCount = min(itemCount, length - position + preItemCount)
+        if (saveItemCount <= 0) {
+            return
+        }
+        val relativePosition = position - preItemCount
+        _items.subList(relativePosition, relativePosition + saveItemCount).clear()
+        invalidateFrom(relativePosition)
+        fastAdapter?.notifyAdapterItemRangeRemoved(position, saveItemCount)
+    }
+
+    override fun move(fromPosition: Int, toPosition: Int, preItemCount: Int) {
+        checkStamp()
+        moveInList(_items, fromPosition - preItemCount, toPosition - preItemCount)
+        invalidateFrom(min(fromPosition, toPosition) - preItemCount)
+        fastAdapter?.notifyAdapterItemMoved(fromPosition, toPosition)
+    }
+
+    override fun clear(preItemCount: Int) {
+        val size = _items.size
+        _items.clear()
+        resetIndex()
+        fastAdapter?.notifyAdapterItemRangeRemoved(preItemCount, size)
+    }
+
+    override fun set(position: Int, item: Item, preItemCount: Int) {
+        checkStamp()
+        val relativePosition = position - preItemCount
+        _items[relativePosition] = item
+        if (relativePosition < indexedCount) {
+            // the previous identifier is left behind, lookups verify the item at the indexed position
+            val existing = identifierIndex[item.identifier]
+            if (existing !in 0 until relativePosition || _items[existing].identifier != item.identifier) {
+                identifierIndex.put(item.identifier, relativePosition)
+            }
+        }
+        indexedStamp = itemsStamp
+        fastAdapter?.notifyAdapterItemChanged(position)
+    }
+
+    override fun addAll(items: List<Item>, preItemCount: Int) {
+        checkStamp()
+        val countBefore = _items.size
+        _items.addAll(items)
+        // appended items are indexed with the next lookup
+        invalidateFrom(countBefore)
+        fastAdapter?.notifyAdapterItemRangeInserted(preItemCount + countBefore, items.size)
+    }
+
+    override fun addAll(position: Int, items: List<Item>, preItemCount: Int) {
+        checkStamp()
+        _items.addAll(position - preItemCount, items)
+        invalidateFrom(position - preItemCount)
+        fastAdapter?.notifyAdapterItemRangeInserted(position, items.size)
+    }
+
+    override fun set(items: List<Item>, preItemCount: Int, adapterNotifier: IAdapterNotifier?) {
+        //get sizes
+        val newItemsCount = items.size
+        val previousItemsCount = _items.size
+
+        //make sure the new items list is not a reference of the already mItems list
+        if (items !== _items) {
+            //remove all previous items
+            if (_items.isNotEmpty()) {
+                _items.clear()
+            }
+
+            //add all new items to the list
+            _items.addAll(items)
+        }
+        resetIndex()
+        fastAdapter?.let { fastAdapter ->
+            //now properly notify the adapter about the changes
+            (adapterNotifier ?: IAdapterNotifier.DEFAULT).notify(
+                    fastAdapter,
+                    newItemsCount,
+                    previousItemsCount,
+                    preItemCount
+            )
+        }
+    }
+
+    override fun setNewList(items: List<Item>, notify: Boolean) {
+        _items = StampedArrayList(items)
+        resetIndex()
+        if (notify) {
+            fastAdapter?.notifyAdapterDataSetChanged()
+        }
+    }
+
+    /**
+     * Drops the complete identifier index, it is rebuilt with the next lookup.
+     * Only required if items change their identifier while being part of this list.
+     */
+    fun invalidateIdentifierIndex() {
+        resetIndex()
+    }
+
+    /** Makes sure all items of the list are indexed */
+    private fun ensureIndexed() {
+        checkStamp()
+        val size = _items.size
+        if (indexedCount >= size) return
+        // drop stale entries of removed items once they outweigh the actual items
+        if (indexedCount == 0 || identifierIndex.size > size * 2 + MIN_STALE_ENTRIES) {
+            identifierIndex.clear()
+            indexedCount = 0
+        }
+        for (i in indexedCount until size) {
+            val identifier = _items[i].identifier
+            val existing = identifierIndex[identifier]
+            // keep the first occurrence of an identifier, same as a linear scan would find it
+            if (existing !in 0 until i || _items[existing].identifier != identifier) {
+                identifierIndex.put(identifier, i)
+            }
+        }
+        indexedCount = size
+    }
+
+    /** Detects modifications done directly to the items list, and invalidates the whole index in that case */
+    private fun checkStamp() {
+        val stamp = itemsStamp
+        if (stamp == NO_STAMP || stamp != indexedStamp) {
+            indexedCount = 0
+            indexedStamp = stamp
+        }
+    }
+
+    private fun invalidateFrom(relativePosition: Int) {
+        indexedCount = min(indexedCount, relativePosition)
+        indexedStamp = itemsStamp
+    }
+
+    private fun resetIndex() {
+        identifierIndex.clear()
+        indexedCount = 0
+        indexedStamp = itemsStamp
+    }
+
+    /**
+     * An [ArrayList] exposing a stamp which changes with every modification, including replacing elements
+     */
+    private class StampedArrayList<E>(items: Collection<E>) : ArrayList<E>(items) {
+        private var replacements = 0
+
+        val stamp: Int
+            get() = modCount + replacements
+
+        override fun set(index: Int, element: E): E {
+            replacements++
+            return super.set(index, element)
+        }
+    }
+
+    companion object {
+        private const val NO_STAMP = Int.MIN_VALUE
+        private const val MIN_STALE_ENTRIES = 16
+    }
+}
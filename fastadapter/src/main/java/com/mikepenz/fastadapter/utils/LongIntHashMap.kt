@@ -0,0 +1,197 @@
+package com.mikepenz.fastadapter.utils
+
+/**
+ * A small open addressing hash map from primitive `long` keys to primitive `int` values.
+ * Used to keep identifier based lookups free of boxing.
+ *
+ * @param initialCapacity the expected amount of entries
+ */
+class LongIntHashMap @JvmOverloads constructor(initialCapacity: Int = 16) {
+
+    private var keys: LongArray
+    private var values: IntArray
+    private var used: BooleanArray
+    private var mask: Int
+
+    /** The amount of entries in this map */
+    var size: Int = 0
+        private set
+
+    val isEmpty: Boolean
+        get() = size == 0
+
+    init {
+        val capacity = capacityFor(initialCapacity)
+        keys = LongArray(capacity)
+        values = IntArray(capacity)
+        used = BooleanArray(capacity)
+        mask = capacity - 1
+    }
+
+    /**
+     * @param key          the key to look up
+     * @param defaultValue the value to return if the key is not contained
+     * @return the value for the key, or `defaultValue` if it is not contained
+     */
+    @JvmOverloads
+    operator fun get(key: Long, defaultValue: Int = NO_VALUE): Int {
+        var slot = slotOf(key)
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return values[slot]
+            }
+            slot = (slot + 1) and mask
+        }
+        return defaultValue
+    }
+
+    fun containsKey(key: Long): Boolean {
+        var slot = slotOf(key)
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return true
+            }
+            slot = (slot + 1) and mask
+        }
+        return false
+    }
+
+    /**
+     * @return the previous value for the key, or [NO_VALUE] if it was not contained
+     */
+    fun put(key: Long, value: Int): Int {
+        var slot = slotOf(key)
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                val previous = values[slot]
+                values[slot] = value
+                return previous
+            }
+            slot = (slot + 1) and mask
+        }
+        keys[slot] = key
+        values[slot] = value
+        used[slot] = true
+        if (++size > (keys.size shr 1) + (keys.size shr 2)) {
+            rehash(keys.size shl 1)
+        }
+        return NO_VALUE
+    }
+
+    operator fun set(key: Long, value: Int) {
+        put(key, value)
+    }
+
+    /**
+     * @return the removed value for the key, or [NO_VALUE] if it was not contained
+     */
+    fun remove(key: Long): Int {
+        var slot = slotOf(key)
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                val previous = values[slot]
+                shiftBack(slot)
+                size--
+                return previous
+            }
+            slot = (slot + 1) and mask
+        }
+        return NO_VALUE
+    }
+
+    fun clear() {
+        if (size == 0) return
+        used.fill(false)
+        size = 0
+    }
+
+    /**
+     * Iterates over all entries of this map. The map must not be modified while iterating
+     */
+    fun forEach(action: (key: Long, value: Int) -> Unit) {
+        for (i in keys.indices) {
+            if (used[i]) {
+                action(keys[i], values[i])
+            }
+        }
+    }
+
+    /**
+     * Removes all entries the predicate returns `true` for
+     *
+     * @return the amount of removed entries
+     */
+    fun removeIf(predicate: (key: Long, value: Int) -> Boolean): Int {
+        var removed = 0
+        var i = 0
+        while (i < keys.size) {
+            // shifting back may move a not yet visited entry into this slot, so check it again
+            if (used[i] && predicate(keys[i], values[i])) {
+                shiftBack(i)
+                size--
+                removed++
+            } else {
+                i++
+            }
+        }
+        return removed
+    }
+
+    /** Frees the given slot and moves following entries of the same probe sequence back into the gap */
+    private fun shiftBack(freed: Int) {
+        var gap = freed
+        var slot = freed
+        while (true) {
+            slot = (slot + 1) and mask
+            if (!used[slot]) break
+            val ideal = slotOf(keys[slot])
+            // the entry may only be moved if its ideal slot is not cyclically between the gap and its current slot
+            val stays = if (gap <= slot) ideal in (gap + 1)..slot else ideal > gap || ideal <= slot
+            if (!stays) {
+                keys[gap] = keys[slot]
+                values[gap] = values[slot]
+                gap = slot
+            }
+        }
+        used[gap] = false
+    }
+
+    private fun rehash(capacity: Int) {
+        val oldKeys = keys
+        val oldValues = values
+        val oldUsed = used
+        keys = LongArray(capacity)
+        values = IntArray(capacity)
+        used = BooleanArray(capacity)
+        mask = capacity - 1
+        for (i in oldKeys.indices) {
+            if (oldUsed[i]) {
+                var slot = slotOf(oldKeys[i])
+                while (used[slot]) {
+                    slot = (slot + 1) and mask
+                }
+                keys[slot] = oldKeys[i]
+                values[slot] = oldValues[i]
+                used[slot] = true
+            }
+        }
+    }
+
+    private fun slotOf(key: Long): Int {
+        val h = (key xor (key ushr 32)).toInt() * -0x61c88647
+        return (h xor (h ushr 16)) and mask
+    }
+
+    companion object {
+        /** The value returned for keys which are not contained in the map */
+        const val NO_VALUE = -1
+
+        private fun capacityFor(expected: Int): Int {
+            var capacity = 4
+            while (capacity * 3 / 4 <= expected) {
+                capacity = capacity shl 1
+            }
+            return capacity
+        }
+    }
+}
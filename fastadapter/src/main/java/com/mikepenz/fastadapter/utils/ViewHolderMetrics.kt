@@ -0,0 +1,93 @@
+package com.mikepenz.fastadapter.utils
+
+import android.util.SparseArray
+import com.mikepenz.fastadapter.listeners.ViewHolderMetricsListener
+
+/**
+ * A [ViewHolderMetricsListener] which sums up the metrics per view type.
+ *
+ * ```
+ * val metrics = ViewHolderMetrics()
+ * fastAdapter.metricsListener = metrics
+ * ...
+ * metrics.types.forEach { Log.d("Metrics", "$it: ${metrics[it]}") }
+ * ```
+ */
+class ViewHolderMetrics : ViewHolderMetricsListener {
+
+    private val metrics = SparseArray<TypeMetrics>()
+
+    /** The view types metrics were recorded for */
+    val types: List<Int>
+        get() = (0 until metrics.size()).map { metrics.keyAt(it) }
+
+    /**
+     * @return the metrics recorded for the given view type, or null if none were recorded
+     */
+    operator fun get(viewType: Int): TypeMetrics? = metrics[viewType]
+
+    /** Drops all recorded metrics */
+    fun reset() {
+        metrics.clear()
+    }
+
+    override fun onViewHolderCreated(viewType: Int, durationNanos: Long) {
+        typeMetrics(viewType).apply {
+            createCount++
+            createTimeNanos += durationNanos
+        }
+    }
+
+    override fun onViewHolderBound(viewType: Int, durationNanos: Long) {
+        typeMetrics(viewType).apply {
+            bindCount++
+            bindTimeNanos += durationNanos
+            maxBindTimeNanos = maxOf(maxBindTimeNanos, durationNanos)
+        }
+    }
+
+    override fun onViewHolderRecycled(viewType: Int) {
+        typeMetrics(viewType).recycleCount++
+    }
+
+    override fun onViewHolderFailedToRecycle(viewType: Int) {
+        typeMetrics(viewType).failedRecycleCount++
+    }
+
+    private fun typeMetrics(viewType: Int): TypeMetrics {
+        return metrics[viewType] ?: TypeMetrics().also { metrics.put(viewType, it) }
+    }
+
+    /**
+     * The metrics recorded for a single view type
+     */
+    class TypeMetrics {
+        var createCount = 0
+            internal set
+        var createTimeNanos = 0L
+            internal set
+        var bindCount = 0
+            internal set
+        var bindTimeNanos = 0L
+            internal set
+        var maxBindTimeNanos = 0L
+            internal set
+        var recycleCount = 0
+            internal set
+        var failedRecycleCount = 0
+            internal set
+
+        /** The average time to create a ViewHolder */
+        val averageCreateTimeNanos: Long
+            get() = if (createCount == 0) 0 else createTimeNanos / createCount
+
+        /** The average time to bind a ViewHolder */
+        val averageBindTimeNanos: Long
+            get() = if (bindCount == 0) 0 else bindTimeNanos / bindCount
+
+        override fun toString(): String {
+            return "TypeMetrics(createCount=$createCount, averageCreateTimeNanos=$averageCreateTimeNanos, bindCount=$bindCount, " +
+                    "averageBindTimeNanos=$averageBindTimeNanos, maxBindTimeNanos=$maxBindTimeNanos, recycleCount=$recycleCount, failedRecycleCount=$failedRecycleCount)"
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.mikepenz.fastadapter.utils
+
+import android.content.Context
+import android.content.ContextWrapper
+import android.os.Handler
+import android.os.Looper
+import android.util.Log
+import android.util.SparseArray
+import android.util.SparseIntArray
+import android.view.LayoutInflater
+import android.view.View
+import android.view.ViewGroup
+import androidx.recyclerview.widget.RecyclerView
+import com.mikepenz.fastadapter.FastAdapter
+import com.mikepenz.fastadapter.GenericItem
+import com.mikepenz.fastadapter.IItemVHFactory
+import com.mikepenz.fastadapter.items.AbstractItem
+import com.mikepenz.fastadapter.items.BaseItemFactory
+import com.mikepenz.fastadapter.listeners.OnCreateViewHolderListenerImpl
+import java.util.*
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * An [OnCreateViewHolderListenerImpl] which inflates the views of ViewHolders ahead of time on a background thread,
+ * and serves them from [onPreCreateViewHolder] instead of inflating them on the main thread.
+ *
+ * The views are created via the factories registered in the [FastAdapter.itemVHFactoryCache], with a [LayoutInflater] cloned for the background thread.
+ * The ViewHolders are created from the views on the main thread.
+ * Only factories which create the view separately ([AbstractItem] and [BaseItemFactory]) are supported, see [createView] and [createViewHolder].
+ * If a type can not be inflated on the background thread (e.g. because a view requires a [Looper]), it is created on the main thread as usual.
+ *
+ * ```
+ * val pool = ViewHolderPrefetchPool<GenericItem>()
+ * fastAdapter.onCreateViewHolderListener = pool
+ * pool.prefetch(fastAdapter, recyclerView, R.id.my_item_type, 6)
+ * ```
+ *
+ * @param executor the executor to inflate the views on, a single daemon thread by default
+ */
+open class ViewHolderPrefetchPool<Item : GenericItem> @JvmOverloads constructor(
+        private val executor: Executor = defaultExecutor()
+) : OnCreateViewHolderListenerImpl<Item>() {
+
+    // all state is only accessed from the main thread
+    // the prefetched holders per type
+    private val pool = SparseArray<ArrayDeque<RecyclerView.ViewHolder>>()
+    // the amount of holders requested but not yet created per type
+    private val pending = SparseIntArray()
+    // types which failed to be created on the background thread
+    private val unsupportedTypes = HashSet<Int>()
+    private val hits = SparseIntArray()
+    private val misses = SparseIntArray()
+    // incremented on clear, to drop the holders still being created
+    private var generation = 0
+
+    private val mainHandler by lazy { Handler(Looper.getMainLooper()) }
+
+    /**
+     * Creates ViewHolders of the given type on the background thread, until [count] holders are available in the pool.
+     * The factory for the type has to be registered already, see [FastAdapter.registerItemFactory]
+     *
+     * Must be called from the main thread.
+     *
+     * @param fastAdapter the fastAdapter the ViewHolders will be used in
+     * @param parent      the parent which will host the views, usually the RecyclerView
+     * @param type        the view type to create the ViewHolders for
+     * @param count       the amount of ViewHolders to keep ready
+     */
+    fun prefetch(fastAdapter: FastAdapter<Item>, parent: ViewGroup, type: Int, count: Int) {
+        if (type in unsupportedTypes || !fastAdapter.itemVHFactoryCache.contains(type)) {
+            return
+        }
+        val itemVHFactory = fastAdapter.getTypeInstance(type)
+        if (!isSupported(itemVHFactory)) {
+            unsupportedTypes.add(type)
+            return
+        }
+        val missing = count - pooledCount(type) - pending[type]
+        if (missing <= 0) {
+            return
+        }
+        pending.put(type, pending[type] + missing)
+        val generation = generation
+        // the LayoutInflater of the context is not thread safe, the views are inflated via a clone of it
+        val context = InflaterContext(parent.context)
+        executor.execute {
+            for (i in 0 until missing) {
+                val view = try {
+                    createView(itemVHFactory, context, parent)
+                } catch (e: RuntimeException) {
+                    Log.w(TAG, "The view for type $type can not be created on a background thread", e)
+                    mainHandler.post { onPrefetchFailed(type, missing - i, generation) }
+                    return@execute
+                }
+                mainHandler.post { onPrefetched(itemVHFactory, view, type, generation) }
+            }
+        }
+    }
+
+    /**
+     * Convenient function for [prefetch], for multiple types at once
+     *
+     * @param counts the amount of ViewHolders to keep ready per view type
+     */
+    fun prefetch(fastAdapter: FastAdapter<Item>, parent: ViewGroup, counts: Map<Int, Int>) {
+        for ((type, count) in counts) {
+            prefetch(fastAdapter, parent, type, count)
+        }
+    }
+
+    override fun onPreCreateViewHolder(fastAdapter: FastAdapter<Item>, parent: ViewGroup, viewType: Int, itemVHFactory: IItemVHFactory<*>): RecyclerView.ViewHolder {
+        val holder = pool[viewType]?.pollFirst()
+        return if (holder != null) {
+            hits.put(viewType, hits[viewType] + 1)
+            holder
+        } else {
+            misses.put(viewType, misses[viewType] + 1)
+            super.onPreCreateViewHolder(fastAdapter, parent, viewType, itemVHFactory)
+        }
+    }
+
+    /** @return the amount of ViewHolders currently available for the given type */
+    fun pooledCount(type: Int): Int = pool[type]?.size ?: 0
+
+    /** @return the amount of ViewHolders of the given type which were served from the pool */
+    fun hitCount(type: Int): Int = hits[type]
+
+    /** @return the amount of ViewHolders of the given type which had to be created on the main thread */
+    fun missCount(type: Int): Int = misses[type]
+
+    /**
+     * Drops all prefetched ViewHolders, and the ones still being created. Resets the counters.
+     *
+     * Must be called from the main thread.
+     */
+    fun clear() {
+        generation++
+        pool.clear()
+        pending.clear()
+        hits.clear()
+        misses.clear()
+    }
+
+    /**
+     * @return true if the view of the factory can be created separately via [createView]
+     */
+    protected open fun isSupported(itemVHFactory: IItemVHFactory<*>): Boolean {
+        return itemVHFactory is AbstractItem<*> || itemVHFactory is BaseItemFactory<*>
+    }
+
+    /**
+     * Creates the view for a ViewHolder of the given factory, called on the background thread
+     *
+     * @param ctx the context providing the [LayoutInflater] to use on the background thread
+     */
+    protected open fun createView(itemVHFactory: IItemVHFactory<*>, ctx: Context, parent: ViewGroup): View {
+        return when (itemVHFactory) {
+            is AbstractItem<*> -> itemVHFactory.createView(ctx, parent)
+            is BaseItemFactory<*> -> itemVHFactory.createView(ctx, parent)
+            else -> throw UnsupportedOperationException("The factory ${itemVHFactory.javaClass.name} does not support creating the view separately")
+        }
+    }
+
+    /**
+     * Creates the ViewHolder of the given factory for the prefetched view, called on the main thread
+     */
+    protected open fun createViewHolder(itemVHFactory: IItemVHFactory<*>, view: View): RecyclerView.ViewHolder {
+        return when (itemVHFactory) {
+            is AbstractItem<*> -> itemVHFactory.getViewHolder(view)
+            is BaseItemFactory<*> -> itemVHFactory.getViewHolder(view)
+            else -> throw UnsupportedOperationException("The factory ${itemVHFactory.javaClass.name} does not support creating the view separately")
+        }
+    }
+
+    private fun onPrefetched(itemVHFactory: IItemVHFactory<*>, view: View, type: Int, generation: Int) {
+        if (generation != this.generation) {
+            return
+        }
+        pending.put(type, pending[type] - 1)
+        val holder = createViewHolder(itemVHFactory, view)
+        (pool[type] ?: ArrayDeque<RecyclerView.ViewHolder>().also { pool.put(type, it) }).add(holder)
+    }
+
+    private fun onPrefetchFailed(type: Int, remaining: Int, generation: Int) {
+        unsupportedTypes.add(type)
+        if (generation == this.generation) {
+            pending.put(type, pending[type] - remaining)
+        }
+    }
+
+    /**
+     * Provides a clone of the [LayoutInflater] of the base context, which is only used by the background thread.
+     * The views are still created with the base context.
+     */
+    private class InflaterContext(base: Context) : ContextWrapper(base) {
+        private val inflater = LayoutInflater.from(base).cloneInContext(base)
+
+        override fun getSystemService(name: String): Any? {
+            return if (Context.LAYOUT_INFLATER_SERVICE == name) inflater else super.getSystemService(name)
+        }
+    }
+
+    companion object {
+        private const val TAG = "ViewHolderPrefetchPool"
+
+        /** A single daemon thread, so an unused pool does not keep the process alive */
+        private fun defaultExecutor(): Executor = Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, TAG).apply {
+                isDaemon = true
+            }
+        }
+    }
+}
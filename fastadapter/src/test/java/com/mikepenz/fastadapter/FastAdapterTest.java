@@ -1,14 +1,21 @@
 package com.mikepenz.fastadapter;
 
+import android.os.Looper;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.mikepenz.fastadapter.adapters.ItemAdapter;
+import com.mikepenz.fastadapter.listeners.ClickEventHook;
+import com.mikepenz.fastadapter.listeners.LongClickEventHook;
 import com.mikepenz.fastadapter.listeners.OnBindViewHolderListener;
 import com.mikepenz.fastadapter.select.SelectExtension;
+import com.mikepenz.fastadapter.utils.IdentifierIndexedItemListImpl;
+import com.mikepenz.fastadapter.utils.ViewHolderPrefetchPool;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -17,12 +24,17 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.robolectric.Shadows.shadowOf;
 
 
 /**
@@ -33,6 +45,8 @@ public class FastAdapterTest {
     private FastAdapter<TestItem> adapter;
     private ItemAdapter<TestItem> itemAdapter;
     private SelectExtension<TestItem> selectExtension;
+    //the positions of the holders bound via createBoundHolder, as they are not attached to a RecyclerView
+    private final Map<RecyclerView.ViewHolder, Integer> boundPositions = new IdentityHashMap<>();
 
     @Before
     public void setUp() throws Exception {
@@ -80,6 +94,114 @@ public class FastAdapterTest {
         assertThat(selectExtension.getSelections().iterator().next()).isEqualTo(10);
     }
 
+    @Test
+    public void selectRange() throws Exception {
+        itemAdapter.set(TestDataGenerator.genTestItemList(100));
+
+        selectExtension.selectRange(60, 20, true);
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(41);
+        assertThat(selectExtension.getSelections()).contains(20, 40, 60);
+
+        selectExtension.selectRange(30, 49, false);
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(21);
+        assertThat(selectExtension.getSelections()).doesNotContain(30, 49);
+    }
+
+    @Test
+    public void deselect() throws Exception {
+        itemAdapter.set(TestDataGenerator.genTestItemList(100));
+        selectExtension.select(10);
+        selectExtension.select(adapter.getItem(20), false);
+
+        assertThat(selectExtension.getSelections()).containsExactly(10, 20);
+
+        selectExtension.deselect(10);
+        assertThat(selectExtension.getSelections()).containsExactly(20);
+
+        selectExtension.deselect(adapter.getItem(20));
+        assertThat(selectExtension.getSelections()).isEmpty();
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void selections_ExternalChange() throws Exception {
+        itemAdapter.set(TestDataGenerator.genTestItemList(100));
+        selectExtension.select(10);
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(1);
+
+        //selected without the extension, picked up with the change notification
+        adapter.getItem(30).setSelected(true);
+        adapter.notifyAdapterItemChanged(30);
+        assertThat(selectExtension.getSelections()).containsExactly(10, 30);
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(2);
+
+        //deselected without the extension, dropped with the next access
+        adapter.getItem(10).setSelected(false);
+        assertThat(selectExtension.getSelections()).containsExactly(30);
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void selections_ShiftedByInsertRemoveAndMove() throws Exception {
+        itemAdapter.set(TestDataGenerator.genTestItemList(100));
+        selectExtension.select(10);
+        selectExtension.select(50);
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(2);
+
+        TestItem inserted = TestDataGenerator.genTestItem(100);
+        inserted.setSelected(true);
+        itemAdapter.add(0, Arrays.asList(inserted, TestDataGenerator.genTestItem(101)));
+        assertThat(selectExtension.getSelections()).containsExactly(0, 12, 52);
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(3);
+
+        itemAdapter.removeRange(0, 2);
+        assertThat(selectExtension.getSelections()).containsExactly(10, 50);
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(2);
+
+        itemAdapter.remove(10);
+        assertThat(selectExtension.getSelections()).containsExactly(49);
+        assertThat(selectExtension.getSelectedItems()).extracting("identifier").containsExactly(50L);
+
+        itemAdapter.move(49, 5);
+        assertThat(selectExtension.getSelections()).containsExactly(5);
+        assertThat(adapter.getItem(5).getIdentifier()).isEqualTo(50);
+    }
+
+    @Test
+    public void selections_ReplacedItems() throws Exception {
+        itemAdapter.set(TestDataGenerator.genTestItemList(100));
+        selectExtension.select(10);
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(1);
+
+        itemAdapter.set(10, TestDataGenerator.genTestItem(1000));
+        assertThat(selectExtension.getSelections()).isEmpty();
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(0);
+
+        //the selected item moves to another position with a new list
+        selectExtension.select(20);
+        List<TestItem> items = TestDataGenerator.genTestItemList(50);
+        items.set(0, adapter.getItem(20));
+        items.set(20, TestDataGenerator.genTestItem(1000));
+        itemAdapter.set(items);
+        assertThat(selectExtension.getSelections()).containsExactly(0);
+        assertThat(selectExtension.getSelectedItems()).extracting("identifier").containsExactly(20L);
+    }
+
+    @Test
+    public void deleteAllSelectedItems() throws Exception {
+        itemAdapter.set(TestDataGenerator.genTestItemList(100));
+        selectExtension.selectRange(10, 19, true);
+        selectExtension.select(50);
+
+        List<TestItem> deleted = selectExtension.deleteAllSelectedItems();
+
+        assertThat(deleted).hasSize(11);
+        assertThat(adapter.getItemCount()).isEqualTo(89);
+        assertThat(adapter.getItem(10).getIdentifier()).isEqualTo(20);
+        assertThat(adapter.getItem(40).getIdentifier()).isEqualTo(51);
+        assertThat(selectExtension.getSelectedCount()).isEqualTo(0);
+    }
+
     @Test
     public void getPosition() throws Exception {
         TestItem testItem = TestDataGenerator.genTestItem(1);
@@ -88,6 +210,123 @@ public class FastAdapterTest {
         assertThat(adapter.getPosition(testItem)).isEqualTo(0);
     }
 
+    @Test
+    public void getPosition_IdentifierIndexedItemList() throws Exception {
+        ItemAdapter<TestItem> indexedAdapter = new ItemAdapter<>(new IdentifierIndexedItemListImpl<TestItem>());
+        FastAdapter<TestItem> fastAdapter = FastAdapter.with(indexedAdapter);
+        indexedAdapter.set(TestDataGenerator.genTestItemList(100));
+
+        assertThat(fastAdapter.getPosition(40)).isEqualTo(40);
+
+        indexedAdapter.remove(10);
+        assertThat(fastAdapter.getPosition(10)).isEqualTo(RecyclerView.NO_POSITION);
+        assertThat(fastAdapter.getPosition(40)).isEqualTo(39);
+
+        indexedAdapter.move(0, 98);
+        assertThat(fastAdapter.getPosition(0)).isEqualTo(98);
+        assertThat(fastAdapter.getPosition(40)).isEqualTo(38);
+
+        indexedAdapter.set(5, TestDataGenerator.genTestItem(500));
+        assertThat(fastAdapter.getPosition(500)).isEqualTo(5);
+        assertThat(fastAdapter.getPosition(6)).isEqualTo(RecyclerView.NO_POSITION);
+
+        indexedAdapter.getAdapterItems().add(0, TestDataGenerator.genTestItem(1000));
+        assertThat(fastAdapter.getPosition(1000)).isEqualTo(0);
+        assertThat(fastAdapter.getPosition(40)).isEqualTo(39);
+        assertThat(fastAdapter.getItemById(40).getFirst().getIdentifier()).isEqualTo(40);
+    }
+
+    @Test
+    public void batch() throws Exception {
+        itemAdapter.set(TestDataGenerator.genTestItemList(100));
+        selectExtension.select(50);
+        RecyclerView.AdapterDataObserver observer = mock(RecyclerView.AdapterDataObserver.class);
+        adapter.registerAdapterDataObserver(observer);
+
+        adapter.batch(() -> {
+            for (int i = 0; i < 10; i++) {
+                itemAdapter.remove(0);
+            }
+            itemAdapter.add(0, TestDataGenerator.genTestItem(1000));
+            itemAdapter.add(1, TestDataGenerator.genTestItem(1001));
+            assertThat(adapter.isBatching()).isTrue();
+            assertThat(adapter.getItemCount()).isEqualTo(92);
+            assertThat(adapter.getItem(2).getIdentifier()).isEqualTo(10);
+            //the extensions are notified immediately
+            assertThat(selectExtension.getSelections()).containsExactly(42);
+        });
+
+        assertThat(adapter.isBatching()).isFalse();
+        assertThat(adapter.getItemCount()).isEqualTo(92);
+        assertThat(selectExtension.getSelections()).containsExactly(42);
+        //the notifications were merged into one removal, and one insertion
+        verify(observer).onItemRangeRemoved(0, 10);
+        verify(observer).onItemRangeInserted(0, 2);
+        verifyNoMoreInteractions(observer);
+    }
+
+    @Test
+    public void adapterOffsets_MultipleAdapters() throws Exception {
+        ItemAdapter<TestItem> first = new ItemAdapter<>();
+        ItemAdapter<TestItem> empty = new ItemAdapter<>();
+        ItemAdapter<TestItem> middle = new ItemAdapter<>();
+        ItemAdapter<TestItem> last = new ItemAdapter<>();
+        FastAdapter<TestItem> fastAdapter = FastAdapter.with(Arrays.asList(first, empty, middle, last));
+        first.set(TestDataGenerator.genTestItemList(5));
+        middle.add(TestDataGenerator.genTestItem(100), TestDataGenerator.genTestItem(101), TestDataGenerator.genTestItem(102));
+
+        assertThat(fastAdapter.getItemCount()).isEqualTo(8);
+        assertThat(fastAdapter.getAdapter(4)).isEqualTo(first);
+        assertThat(fastAdapter.getAdapter(5)).isEqualTo(middle);
+        assertThat(fastAdapter.getPreItemCountByOrder(empty.getOrder())).isEqualTo(5);
+        assertThat(fastAdapter.getPreItemCountByOrder(middle.getOrder())).isEqualTo(5);
+        assertThat(fastAdapter.getPreItemCountByOrder(last.getOrder())).isEqualTo(8);
+
+        //insert at the end of an adapter, directly before the next one
+        first.add(TestDataGenerator.genTestItem(5));
+        assertThat(fastAdapter.getAdapter(5)).isEqualTo(first);
+        assertThat(fastAdapter.getItem(6).getIdentifier()).isEqualTo(100);
+
+        //insert into an empty adapter between two adapters
+        empty.add(TestDataGenerator.genTestItem(50));
+        assertThat(fastAdapter.getAdapter(6)).isEqualTo(empty);
+        assertThat(fastAdapter.getItem(6).getIdentifier()).isEqualTo(50);
+        assertThat(fastAdapter.getPreItemCount(7)).isEqualTo(7);
+
+        //insert into the empty last adapter
+        last.add(TestDataGenerator.genTestItem(200));
+        assertThat(fastAdapter.getItemCount()).isEqualTo(11);
+        assertThat(fastAdapter.getAdapter(10)).isEqualTo(last);
+
+        //remove the first item of an adapter, and empty an adapter again
+        middle.remove(0);
+        empty.clear();
+        assertThat(fastAdapter.getItemCount()).isEqualTo(9);
+        assertThat(fastAdapter.getItem(6).getIdentifier()).isEqualTo(101);
+        assertThat(fastAdapter.getAdapter(6)).isEqualTo(middle);
+        assertThat(fastAdapter.getPreItemCountByOrder(last.getOrder())).isEqualTo(8);
+        assertThat(fastAdapter.getItem(8).getIdentifier()).isEqualTo(200);
+    }
+
+    @Test
+    public void adapterOffsets_RebuildOnUnexpectedChange() throws Exception {
+        ItemAdapter<TestItem> first = new ItemAdapter<>();
+        ItemAdapter<TestItem> second = new ItemAdapter<>();
+        FastAdapter<TestItem> fastAdapter = FastAdapter.with(Arrays.asList(first, second));
+        first.set(TestDataGenerator.genTestItemList(5));
+        second.set(TestDataGenerator.genTestItemList(5));
+
+        //two items are added, but only one is notified, the sizes have to be recounted
+        first.getAdapterItems().add(TestDataGenerator.genTestItem(10));
+        first.getAdapterItems().add(TestDataGenerator.genTestItem(11));
+        fastAdapter.notifyAdapterItemInserted(5);
+
+        assertThat(fastAdapter.getItemCount()).isEqualTo(12);
+        assertThat(fastAdapter.getAdapter(6)).isEqualTo(first);
+        assertThat(fastAdapter.getAdapter(7)).isEqualTo(second);
+        assertThat(fastAdapter.getPreItemCountByOrder(second.getOrder())).isEqualTo(7);
+    }
+
     @Test
     public void getItem() throws Exception {
         List<TestItem> items = TestDataGenerator.genTestItemList(100);
@@ -202,6 +441,52 @@ public class FastAdapterTest {
         verify(listener, only()).onBindViewHolder(holder, 10, new ArrayList<>());
     }
 
+    @Test
+    public void viewHolderPrefetchPool() {
+        TestItem testItem = new TestItem("example name");
+        adapter.registerItemFactory(testItem.getType(), testItem);
+        ViewHolderPrefetchPool<TestItem> pool = new ViewHolderPrefetchPool<>(Runnable::run);
+        adapter.setOnCreateViewHolderListener(pool);
+        ViewGroup parent = new FrameLayout(RuntimeEnvironment.application);
+
+        pool.prefetch(adapter, parent, testItem.getType(), 2);
+        //the ViewHolders are created on the main thread
+        assertThat(pool.pooledCount(testItem.getType())).isEqualTo(0);
+        shadowOf(Looper.getMainLooper()).idle();
+        assertThat(pool.pooledCount(testItem.getType())).isEqualTo(2);
+
+        //already prefetched holders are not requested again
+        pool.prefetch(adapter, parent, testItem.getType(), 2);
+        shadowOf(Looper.getMainLooper()).idle();
+        assertThat(pool.pooledCount(testItem.getType())).isEqualTo(2);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(adapter.onCreateViewHolder(parent, testItem.getType())).isNotNull();
+        }
+        assertThat(pool.hitCount(testItem.getType())).isEqualTo(2);
+        assertThat(pool.missCount(testItem.getType())).isEqualTo(1);
+        assertThat(pool.pooledCount(testItem.getType())).isEqualTo(0);
+    }
+
+    @Test
+    public void viewHolderPrefetchPool_Clear() {
+        TestItem testItem = new TestItem("example name");
+        adapter.registerItemFactory(testItem.getType(), testItem);
+        List<Runnable> tasks = new ArrayList<>();
+        ViewHolderPrefetchPool<TestItem> pool = new ViewHolderPrefetchPool<>(tasks::add);
+        ViewGroup parent = new FrameLayout(RuntimeEnvironment.application);
+
+        pool.prefetch(adapter, parent, testItem.getType(), 2);
+        pool.clear();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+
+        //the holders requested before clearing are dropped
+        assertThat(pool.pooledCount(testItem.getType())).isEqualTo(0);
+    }
+
     @Test
     public void testAddPreviouslyFilledAdapterPropagatesPossibleTypesToParentFastAdapter() {
         final TestItem testItem = new TestItem("example name");
@@ -213,4 +498,115 @@ public class FastAdapterTest {
         final ViewGroup dummyParent = new FrameLayout(RuntimeEnvironment.application);
         adapter.onCreateViewHolder(dummyParent, testItem.getType());
     }
+
+    @Test
+    public void sharedEventHookDispatch_Click() {
+        FastAdapter<TestItem> fastAdapter = sharedDispatchAdapter();
+        final List<String> clicks = new ArrayList<>();
+        fastAdapter.addEventHook(new ClickEventHook<TestItem>() {
+            @Nullable
+            @Override
+            public View onBind(@NonNull RecyclerView.ViewHolder viewHolder) {
+                return viewHolder.itemView;
+            }
+
+            @Override
+            public void onClick(@NonNull View v, int position, @NonNull FastAdapter<TestItem> fastAdapter, @NonNull TestItem item) {
+                clicks.add(position + ":" + item.getIdentifier());
+            }
+        });
+        RecyclerView.ViewHolder first = createBoundHolder(fastAdapter, 0);
+        RecyclerView.ViewHolder second = createBoundHolder(fastAdapter, 1);
+
+        second.itemView.performClick();
+        first.itemView.performClick();
+
+        assertThat(clicks).containsExactly("1:1", "0:0");
+        //all views share one stateless listener
+        assertThat(shadowOf(first.itemView).getOnClickListener()).isSameAs(shadowOf(second.itemView).getOnClickListener());
+    }
+
+    @Test
+    public void sharedEventHookDispatch_LastHookWins() {
+        FastAdapter<TestItem> fastAdapter = sharedDispatchAdapter();
+        final List<String> events = new ArrayList<>();
+        fastAdapter.setOnClickListener((v, adapter, item, position) -> events.add("default"));
+        fastAdapter.addEventHook(itemViewClickHook("first", events));
+        fastAdapter.addEventHook(itemViewClickHook("second", events));
+        fastAdapter.addEventHook(new LongClickEventHook<TestItem>() {
+            @Nullable
+            @Override
+            public View onBind(@NonNull RecyclerView.ViewHolder viewHolder) {
+                return viewHolder.itemView;
+            }
+
+            @Override
+            public boolean onLongClick(@NonNull View v, int position, @NonNull FastAdapter<TestItem> fastAdapter, @NonNull TestItem item) {
+                return events.add("long:" + position);
+            }
+        });
+        createBoundHolder(fastAdapter, 0);
+        RecyclerView.ViewHolder holder = createBoundHolder(fastAdapter, 1);
+
+        holder.itemView.performClick();
+        assertThat(holder.itemView.performLongClick()).isTrue();
+
+        //same as with a listener per hook, the last click hook on the itemView replaces the default listener and the previous hook
+        assertThat(events).containsExactly("second", "long:1");
+    }
+
+    @Test
+    public void sharedEventHookDispatch_DefaultListeners() {
+        FastAdapter<TestItem> fastAdapter = sharedDispatchAdapter();
+        final List<String> events = new ArrayList<>();
+        fastAdapter.setOnClickListener((v, adapter, item, position) -> events.add("click:" + position));
+        fastAdapter.setOnLongClickListener((v, adapter, item, position) -> events.add("long:" + position));
+        RecyclerView.ViewHolder holder = createBoundHolder(fastAdapter, 1);
+
+        holder.itemView.performClick();
+        assertThat(holder.itemView.performLongClick()).isTrue();
+
+        assertThat(events).containsExactly("click:1", "long:1");
+    }
+
+    /**
+     * @return an adapter with two items dispatching its event hooks via the shared listener, which resolves the positions of the holders bound via {@link #createBoundHolder}
+     */
+    private FastAdapter<TestItem> sharedDispatchAdapter() {
+        ItemAdapter<TestItem> itemAdapter = new ItemAdapter<>();
+        FastAdapter<TestItem> fastAdapter = new FastAdapter<TestItem>() {
+            @Override
+            public int getHolderAdapterPosition(@NonNull RecyclerView.ViewHolder holder) {
+                Integer position = boundPositions.get(holder);
+                return position != null ? position : RecyclerView.NO_POSITION;
+            }
+        };
+        fastAdapter.addAdapter(0, itemAdapter);
+        fastAdapter.setSharedEventHookDispatch(true);
+        itemAdapter.set(TestDataGenerator.genTestItemList(2));
+        return fastAdapter;
+    }
+
+    private RecyclerView.ViewHolder createBoundHolder(FastAdapter<TestItem> fastAdapter, int position) {
+        ViewGroup parent = new FrameLayout(RuntimeEnvironment.application);
+        RecyclerView.ViewHolder holder = fastAdapter.onCreateViewHolder(parent, fastAdapter.getItemViewType(position));
+        fastAdapter.onBindViewHolder(holder, position, new ArrayList<>());
+        boundPositions.put(holder, position);
+        return holder;
+    }
+
+    private static ClickEventHook<TestItem> itemViewClickHook(final String name, final List<String> events) {
+        return new ClickEventHook<TestItem>() {
+            @Nullable
+            @Override
+            public View onBind(@NonNull RecyclerView.ViewHolder viewHolder) {
+                return viewHolder.itemView;
+            }
+
+            @Override
+            public void onClick(@NonNull View v, int position, @NonNull FastAdapter<TestItem> fastAdapter, @NonNull TestItem item) {
+                events.add(name);
+            }
+        };
+    }
 }
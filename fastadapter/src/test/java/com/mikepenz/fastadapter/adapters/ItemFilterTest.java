@@ -0,0 +1,137 @@
+package com.mikepenz.fastadapter.adapters;
+
+import android.os.Looper;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mikepenz.fastadapter.FastAdapter;
+import com.mikepenz.fastadapter.TestDataGenerator;
+import com.mikepenz.fastadapter.TestItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemFilterTest {
+    private FastAdapter<TestItem> adapter;
+    private ItemAdapter<TestItem> itemAdapter;
+    private ItemFilter<TestItem, TestItem> itemFilter;
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final AtomicInteger predicateCalls = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        itemAdapter = new ItemAdapter<>();
+        adapter = FastAdapter.with(itemAdapter);
+        itemAdapter.set(TestDataGenerator.genTestItemList(100));
+
+        itemFilter = itemAdapter.getItemFilter();
+        itemFilter.setIncrementalExecutor(tasks::add);
+        itemFilter.setFilterPredicate((item, constraint) -> {
+            predicateCalls.incrementAndGet();
+            return String.valueOf(item.getIdentifier()).contains(constraint);
+        });
+    }
+
+    @Test
+    public void filterIncremental_PublishesDiff() throws Exception {
+        RecyclerView.AdapterDataObserver observer = mock(RecyclerView.AdapterDataObserver.class);
+        adapter.registerAdapterDataObserver(observer);
+
+        itemAdapter.filter("1");
+
+        //nothing is applied before the background work is done
+        assertThat(tasks).hasSize(1);
+        assertThat(itemAdapter.getAdapterItemCount()).isEqualTo(100);
+
+        runTasks();
+
+        //1, 10 - 19, 21, 31, ..., 91
+        assertThat(itemAdapter.getAdapterItemCount()).isEqualTo(19);
+        assertThat(itemAdapter.getAdapterItem(1).getIdentifier()).isEqualTo(10);
+        verify(observer, never()).onChanged();
+
+        itemAdapter.filter(null);
+        runTasks();
+
+        assertThat(itemAdapter.getAdapterItemCount()).isEqualTo(100);
+    }
+
+    @Test
+    public void filterIncremental_NewConstraintCancelsPrevious() throws Exception {
+        itemAdapter.filter("1");
+        itemAdapter.filter("2");
+
+        runTasks();
+
+        //the first run stopped before checking any item, and only the latest results are applied
+        assertThat(predicateCalls.get()).isEqualTo(100);
+        assertThat(itemAdapter.getAdapterItemCount()).isEqualTo(19);
+        assertThat(itemAdapter.getAdapterItem(0).getIdentifier()).isEqualTo(2);
+        assertThat(itemFilter.getConstraint()).isEqualTo("2");
+    }
+
+    @Test
+    public void filterIncremental_RefinesPreviousResults() throws Exception {
+        itemAdapter.filter("1");
+        runTasks();
+        predicateCalls.set(0);
+
+        itemAdapter.filter("11");
+        runTasks();
+
+        //only the 19 previous results were checked
+        assertThat(predicateCalls.get()).isEqualTo(19);
+        assertThat(itemAdapter.getAdapterItemCount()).isEqualTo(1);
+        assertThat(itemAdapter.getAdapterItem(0).getIdentifier()).isEqualTo(11);
+
+        itemFilter.setRefineExtendedConstraint(false);
+        predicateCalls.set(0);
+
+        itemAdapter.filter("111");
+        runTasks();
+
+        assertThat(predicateCalls.get()).isEqualTo(100);
+        assertThat(itemAdapter.getAdapterItemCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void filterIncremental_ResetByPerformFiltering() throws Exception {
+        itemAdapter.filter("1");
+        runTasks();
+
+        //a synchronous filter run invalidates the incremental results
+        itemFilter.filterItems("5");
+        assertThat(itemAdapter.getAdapterItemCount()).isEqualTo(19);
+        predicateCalls.set(0);
+
+        itemAdapter.filter("15");
+        runTasks();
+
+        //the results of "1" are not refined, all original items are checked again
+        assertThat(predicateCalls.get()).isEqualTo(100);
+        assertThat(itemAdapter.getAdapterItemCount()).isEqualTo(1);
+        assertThat(itemAdapter.getAdapterItem(0).getIdentifier()).isEqualTo(15);
+    }
+
+    private void runTasks() {
+        List<Runnable> pending = new ArrayList<>(tasks);
+        tasks.clear();
+        for (Runnable task : pending) {
+            task.run();
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}